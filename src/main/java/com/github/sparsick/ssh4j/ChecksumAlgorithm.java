@@ -0,0 +1,76 @@
+package com.github.sparsick.ssh4j;
+
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Checksums that can be computed on both sides of a transfer. CRC32C is not offered: the JDK has it since Java 9, but
+ * neither coreutils nor the SFTP {@code check-file} extension can compute it on the remote side.
+ */
+public enum ChecksumAlgorithm {
+
+    SHA256("SHA-256", "sha256", "sha256sum -- %s"),
+    SHA1("SHA-1", "sha1", "sha1sum -- %s"),
+    MD5("MD5", "md5", "md5sum -- %s"),
+    /**
+     * Non-cryptographic and much faster than the others, detects transfer corruption but not tampering. Needs
+     * {@code xxhsum} on the remote host, the file is passed on stdin because older releases do not understand
+     * {@code --}.
+     */
+    XXH64("XXH64", null, "xxhsum -H1 < %s") {
+        @Override
+        public MessageDigest newDigest() {
+            return new Xxh64Digest();
+        }
+    };
+
+    private final String digestName;
+    private final String checkFileName;
+    private final String remoteCommand;
+
+    ChecksumAlgorithm(String digestName, String checkFileName, String remoteCommand) {
+        this.digestName = digestName;
+        this.checkFileName = checkFileName;
+        this.remoteCommand = remoteCommand;
+    }
+
+    public MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance(digestName);
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException(digestName + " is not supported by this JVM.", ex);
+        }
+    }
+
+    /**
+     * Hash algorithm name of the SFTP {@code check-file} extension, {@code null} if the extension does not define one.
+     */
+    public String getCheckFileName() {
+        return checkFileName;
+    }
+
+    public String buildRemoteCommand(String remotePath) {
+        return String.format(remoteCommand, RemoteShell.quote(remotePath));
+    }
+
+    public String parseRemoteCommandOutput(String output) throws IOException {
+        String checksum = output.trim().split("\\s+")[0];
+        // coreutils escapes file names with special characters and marks this with a leading backslash
+        if (checksum.startsWith("\\")) {
+            checksum = checksum.substring(1);
+        }
+        if (checksum.isEmpty()) {
+            throw new IOException("No checksum in output of " + remoteCommand.split(" ")[0] + ".");
+        }
+        return checksum.toLowerCase();
+    }
+
+    public static String toHex(byte[] checksum) {
+        StringBuilder hex = new StringBuilder(checksum.length * 2);
+        for (byte b : checksum) {
+            hex.append(String.format("%02x", b));
+        }
+        return hex.toString();
+    }
+}
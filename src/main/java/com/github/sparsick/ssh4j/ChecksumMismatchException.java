@@ -0,0 +1,23 @@
+package com.github.sparsick.ssh4j;
+
+import java.io.IOException;
+
+public class ChecksumMismatchException extends IOException {
+
+    private final String expectedChecksum;
+    private final String actualChecksum;
+
+    public ChecksumMismatchException(String remotePath, ChecksumAlgorithm algorithm, String expectedChecksum, String actualChecksum) {
+        super(String.format("%s checksum of %s does not match: local %s, remote %s", algorithm, remotePath, expectedChecksum, actualChecksum));
+        this.expectedChecksum = expectedChecksum;
+        this.actualChecksum = actualChecksum;
+    }
+
+    public String getExpectedChecksum() {
+        return expectedChecksum;
+    }
+
+    public String getActualChecksum() {
+        return actualChecksum;
+    }
+}
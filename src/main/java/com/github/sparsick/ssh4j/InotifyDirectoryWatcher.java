@@ -0,0 +1,146 @@
+package com.github.sparsick.ssh4j;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Reads the event stream of a remote {@code inotifywait}, so the cost per event is independent of the directory size.
+ * A new file is reported as CREATED when its first write is closed, so a listener never picks up a half written file.
+ * Later writes are MODIFIED, a file moved in is CREATED right away.
+ */
+class InotifyDirectoryWatcher implements RemoteDirectoryWatcher {
+
+    static final String AVAILABILITY_COMMAND = "command -v inotifywait";
+
+    private static final String WATCHES_ESTABLISHED = "Watches established.";
+    private static final String SETTING_UP_WATCHES = "Setting up watches.";
+
+    private final Closeable channel;
+    private final RemoteChangeListener listener;
+    // files whose CREATE was seen and whose first CLOSE_WRITE is still to come, only used by the reader thread
+    private final Set<String> createdFiles = new HashSet<>();
+    private volatile boolean stopped;
+    private volatile boolean closed;
+
+    /**
+     * Blocks until inotifywait has established its watches, so that no change after the return of this constructor is
+     * missed. The channel is closed if inotifywait fails to start.
+     */
+    InotifyDirectoryWatcher(String remoteDirectory, InputStream events, Closeable channel, RemoteChangeListener listener) throws IOException {
+        this.channel = channel;
+        this.listener = listener;
+        BufferedReader reader = new BufferedReader(new InputStreamReader(events, StandardCharsets.UTF_8));
+        try {
+            awaitWatches(reader);
+        } catch (IOException ex) {
+            close();
+            throw ex;
+        }
+        Thread thread = new Thread(() -> readEvents(reader), "remote-watch-" + remoteDirectory);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * '/' cannot occur in a file name, so it separates the event flags from the name. The diagnostics of inotifywait
+     * are merged into the event stream, its "Watches established." line ends the start up. inotifywait runs in the
+     * background and is killed as soon as the channel, and with it stdin of cat, is closed.
+     */
+    static String buildCommand(String remoteDirectory) {
+        return "inotifywait -m -e create,close_write,moved_to,delete,moved_from --format '%e/%f' "
+                + RemoteShell.quote(remoteDirectory) + " 2>&1 & cat > /dev/null; kill $!";
+    }
+
+    private static void awaitWatches(BufferedReader reader) throws IOException {
+        String line;
+        while ((line = reader.readLine()) != null) {
+            if (line.equals(WATCHES_ESTABLISHED)) {
+                return;
+            }
+            // any other line before the watches exist is an error message, e.g. for a missing directory
+            if (!line.equals(SETTING_UP_WATCHES)) {
+                throw new IOException("inotifywait failed: " + line);
+            }
+        }
+        throw new IOException("inotifywait terminated before its watches were established");
+    }
+
+    private void readEvents(BufferedReader reader) {
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                RemoteChangeEvent event = parse(line);
+                if (event != null) {
+                    listener.onChange(event);
+                }
+            }
+            if (!closed) {
+                listener.onError(new IOException("inotifywait terminated unexpectedly"));
+            }
+        } catch (IOException ex) {
+            if (!closed) {
+                listener.onError(ex);
+            }
+        } finally {
+            stopped = true;
+            try {
+                reader.close();
+            } catch (IOException ex) {
+                // Ignore because closing is quietly
+            }
+        }
+    }
+
+    private RemoteChangeEvent parse(String line) {
+        int separator = line.indexOf('/');
+        if (separator < 0) {
+            return null;
+        }
+        String name = line.substring(separator + 1);
+        RemoteChangeEvent.Type type = null;
+        for (String flag : line.substring(0, separator).split(",")) {
+            switch (flag) {
+                case "ISDIR":
+                    return null;
+                case "CREATE":
+                    createdFiles.add(name);
+                    break;
+                case "MOVED_TO":
+                    type = RemoteChangeEvent.Type.CREATED;
+                    break;
+                case "CLOSE_WRITE":
+                    type = createdFiles.remove(name) ? RemoteChangeEvent.Type.CREATED : RemoteChangeEvent.Type.MODIFIED;
+                    break;
+                case "DELETE":
+                case "MOVED_FROM":
+                    // a file that disappears before its first write was finished has never been reported
+                    type = createdFiles.remove(name) ? null : RemoteChangeEvent.Type.DELETED;
+                    break;
+                default:
+                    break;
+            }
+        }
+        return type == null ? null : new RemoteChangeEvent(type, name);
+    }
+
+    @Override
+    public boolean isWatching() {
+        return !closed && !stopped;
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        try {
+            channel.close();
+        } catch (IOException ex) {
+            // Ignore because closing is quietly
+        }
+    }
+}
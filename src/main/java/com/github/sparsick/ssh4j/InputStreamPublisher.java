@@ -0,0 +1,150 @@
+package com.github.sparsick.ssh4j;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.Objects;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cold publisher of the chunks of a remote file. Every subscriber opens its own stream, and a chunk is only read from
+ * the remote side after the subscriber requested it, so memory stays bounded by the outstanding demand.
+ */
+class InputStreamPublisher implements Flow.Publisher<ByteBuffer> {
+
+    static final int CHUNK_SIZE = 32 * 1024;
+
+    static final ExecutorService READ_EXECUTOR = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "remote-read");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final StreamOpener opener;
+    private final Executor executor;
+
+    InputStreamPublisher(StreamOpener opener) {
+        this(opener, READ_EXECUTOR);
+    }
+
+    InputStreamPublisher(StreamOpener opener, Executor executor) {
+        this.opener = opener;
+        this.executor = executor;
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super ByteBuffer> subscriber) {
+        Objects.requireNonNull(subscriber, "subscriber");
+        subscriber.onSubscribe(new StreamSubscription(subscriber));
+    }
+
+    @FunctionalInterface
+    interface StreamOpener {
+
+        InputStream open() throws IOException;
+    }
+
+    private class StreamSubscription implements Flow.Subscription {
+
+        private final Flow.Subscriber<? super ByteBuffer> subscriber;
+        private final AtomicLong demand = new AtomicLong();
+        private final AtomicInteger workInProgress = new AtomicInteger();
+        private volatile boolean cancelled;
+        private volatile boolean invalidRequest;
+        private InputStream inputStream;
+        private boolean done;
+
+        StreamSubscription(Flow.Subscriber<? super ByteBuffer> subscriber) {
+            this.subscriber = subscriber;
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                invalidRequest = true;
+            } else {
+                demand.getAndUpdate(current -> current + n < 0 ? Long.MAX_VALUE : current + n);
+            }
+            schedule();
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+            schedule();
+        }
+
+        private void schedule() {
+            if (workInProgress.getAndIncrement() == 0) {
+                executor.execute(this::drain);
+            }
+        }
+
+        // only one drain runs at a time, signals to the subscriber are therefore serialized
+        private void drain() {
+            int missed = 1;
+            do {
+                if (!done) {
+                    if (cancelled) {
+                        finish();
+                    } else if (invalidRequest) {
+                        finish();
+                        subscriber.onError(new IllegalArgumentException("Requested amount must be positive"));
+                    } else {
+                        emit();
+                    }
+                }
+                missed = workInProgress.addAndGet(-missed);
+            } while (missed != 0);
+        }
+
+        private void emit() {
+            while (demand.get() > 0 && !cancelled && !invalidRequest) {
+                int read;
+                byte[] chunk = new byte[CHUNK_SIZE];
+                // any failure of the stream must end in a terminal signal, otherwise the subscriber waits forever
+                try {
+                    if (inputStream == null) {
+                        inputStream = opener.open();
+                    }
+                    read = inputStream.read(chunk);
+                } catch (Throwable ex) {
+                    finish();
+                    subscriber.onError(ex);
+                    return;
+                }
+                if (read == -1) {
+                    finish();
+                    subscriber.onComplete();
+                    return;
+                }
+                if (read > 0) {
+                    demand.decrementAndGet();
+                    try {
+                        subscriber.onNext(ByteBuffer.wrap(chunk, 0, read));
+                    } catch (Throwable ex) {
+                        // a failing subscriber is treated as cancelled (Reactive Streams rule 2.13)
+                        finish();
+                        throw ex;
+                    }
+                }
+            }
+        }
+
+        private void finish() {
+            done = true;
+            if (inputStream != null) {
+                try {
+                    inputStream.close();
+                } catch (IOException ex) {
+                    // Ignore because closing is quietly
+                }
+            }
+        }
+    }
+}
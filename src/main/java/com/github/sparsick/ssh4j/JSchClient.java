@@ -6,13 +6,23 @@ import com.jcraft.jsch.JSch;
 import com.jcraft.jsch.JSchException;
 import com.jcraft.jsch.Session;
 import com.jcraft.jsch.SftpException;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.security.DigestInputStream;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Flow;
 
 public class JSchClient implements SshClient {
 
@@ -21,6 +31,8 @@ public class JSchClient implements SshClient {
     private Path privateKey;
     private Session session;
     private Path knownHosts;
+    private int keepAliveInterval;
+    private int keepAliveMaxMissedReplies;
 
     @Override
     public void authUserPassword(String user, String password) {
@@ -39,8 +51,17 @@ public class JSchClient implements SshClient {
         this.knownHosts = knownHosts;
     }
 
+    @Override
+    public void setKeepAlive(int intervalSeconds, int maxMissedReplies) {
+        this.keepAliveInterval = intervalSeconds;
+        this.keepAliveMaxMissedReplies = maxMissedReplies;
+    }
+
     @Override
     public void connect(String host) throws IOException {
+        if (session != null && !session.isConnected()) {
+            disconnect();
+        }
         if (session == null) {
             try {
                 JSch sshClient = new JSch();
@@ -59,6 +80,10 @@ public class JSchClient implements SshClient {
                 } else if (privateKey == null){
                     throw new IOException("Either privateKey nor password is set. Please call one of the authentication method.");
                 }
+                if (keepAliveInterval > 0) {
+                    session.setServerAliveInterval(keepAliveInterval * 1000);
+                    session.setServerAliveCountMax(keepAliveMaxMissedReplies);
+                }
                 session.connect();
             } catch (JSchException ex) {
                 throw new IOException(ex);
@@ -75,6 +100,11 @@ public class JSchClient implements SshClient {
         }
     }
 
+    @Override
+    public boolean isConnected() {
+        return session != null && session.isConnected();
+    }
+
     @Override
     public void download(String remotePath, Path local) throws IOException {
         ChannelSftp sftpChannel = null;
@@ -111,6 +141,154 @@ public class JSchClient implements SshClient {
         }
     }
 
+    @Override
+    public void download(String remotePath, Path local, ChecksumAlgorithm checksumAlgorithm) throws IOException {
+        MessageDigest digest = checksumAlgorithm.newDigest();
+        ChannelSftp sftpChannel = null;
+        try {
+            sftpChannel = (ChannelSftp) session.openChannel("sftp");
+            sftpChannel.connect();
+            try (InputStream inputStream = new DigestInputStream(sftpChannel.get(remotePath), digest)) {
+                Files.copy(inputStream, local);
+            }
+        } catch (SftpException | JSchException ex) {
+            throw new IOException(ex);
+        } finally {
+            if (sftpChannel != null) {
+                sftpChannel.disconnect();
+
+            }
+        }
+        verifyChecksum(remotePath, checksumAlgorithm, digest);
+    }
+
+    @Override
+    public void upload(Path local, String remotePath, ChecksumAlgorithm checksumAlgorithm) throws IOException {
+        MessageDigest digest = checksumAlgorithm.newDigest();
+        ChannelSftp sftpChannel = null;
+        try {
+            sftpChannel = (ChannelSftp) session.openChannel("sftp");
+            sftpChannel.connect();
+            try (OutputStream outputStream = new DigestOutputStream(sftpChannel.put(remotePath), digest)) {
+                Files.copy(local, outputStream);
+            }
+        } catch (SftpException | JSchException ex) {
+            throw new IOException(ex);
+        } finally {
+            if (sftpChannel != null) {
+                sftpChannel.disconnect();
+
+            }
+        }
+        verifyChecksum(remotePath, checksumAlgorithm, digest);
+    }
+
+    private void verifyChecksum(String remotePath, ChecksumAlgorithm checksumAlgorithm, MessageDigest digest) throws IOException {
+        String localChecksum = ChecksumAlgorithm.toHex(digest.digest());
+        String remoteChecksum = checksumAlgorithm.parseRemoteCommandOutput(executeCommandForOutput(checksumAlgorithm.buildRemoteCommand(remotePath)));
+        if (!localChecksum.equals(remoteChecksum)) {
+            throw new ChecksumMismatchException(remotePath, checksumAlgorithm, localChecksum, remoteChecksum);
+        }
+    }
+
+    @Override
+    public Flow.Publisher<ByteBuffer> read(String remotePath) {
+        return new InputStreamPublisher(() -> {
+            ChannelSftp sftpChannel = null;
+            try {
+                sftpChannel = (ChannelSftp) session.openChannel("sftp");
+                sftpChannel.connect();
+                ChannelSftp readChannel = sftpChannel;
+                return new FilterInputStream(sftpChannel.get(remotePath)) {
+                    @Override
+                    public void close() throws IOException {
+                        try {
+                            super.close();
+                        } finally {
+                            readChannel.disconnect();
+                        }
+                    }
+                };
+            } catch (SftpException | JSchException ex) {
+                if (sftpChannel != null) {
+                    sftpChannel.disconnect();
+                }
+                throw new IOException(ex);
+            }
+        });
+    }
+
+    @Override
+    public void write(String remotePath, Flow.Publisher<ByteBuffer> content) throws IOException {
+        ChannelSftp sftpChannel = null;
+        try {
+            sftpChannel = (ChannelSftp) session.openChannel("sftp");
+            sftpChannel.connect();
+            try (OutputStream outputStream = sftpChannel.put(remotePath)) {
+                OutputStreamSubscriber.writeTo(content, outputStream);
+            }
+        } catch (SftpException | JSchException ex) {
+            throw new IOException(ex);
+        } finally {
+            if (sftpChannel != null) {
+                sftpChannel.disconnect();
+
+            }
+        }
+    }
+
+    @Override
+    public void uploadDirectory(Path localDirectory, String remoteDirectory, boolean compress) throws IOException {
+        String quotedDirectory = RemoteShell.quote(remoteDirectory);
+        String command = "mkdir -p " + quotedDirectory + " && tar -x" + (compress ? "z" : "") + "f - -C " + quotedDirectory;
+        ChannelExec execChannel = null;
+        try {
+            execChannel = (ChannelExec) session.openChannel("exec");
+            execChannel.setCommand(command);
+            ByteArrayOutputStream errorStream = new ByteArrayOutputStream();
+            execChannel.setErrStream(errorStream);
+            OutputStream inputStream = execChannel.getOutputStream();
+            execChannel.connect();
+            try (OutputStream tarStream = TarArchive.openOutputStream(inputStream, compress)) {
+                TarArchive.write(localDirectory, tarStream);
+            }
+            waitForExit(execChannel, command, errorStream);
+        } catch (JSchException ex) {
+            throw new IOException(ex);
+        } finally {
+            if (execChannel != null) {
+                execChannel.disconnect();
+
+            }
+        }
+    }
+
+    @Override
+    public void downloadDirectory(String remoteDirectory, Path localDirectory, boolean compress) throws IOException {
+        String command = "tar -c" + (compress ? "z" : "") + "f - -C " + RemoteShell.quote(remoteDirectory) + " .";
+        ChannelExec execChannel = null;
+        try {
+            execChannel = (ChannelExec) session.openChannel("exec");
+            execChannel.setCommand(command);
+            ByteArrayOutputStream errorStream = new ByteArrayOutputStream();
+            execChannel.setErrStream(errorStream);
+            InputStream outputStream = execChannel.getInputStream();
+            execChannel.connect();
+            Files.createDirectories(localDirectory);
+            try (InputStream tarStream = TarArchive.openInputStream(outputStream, compress)) {
+                TarArchive.extract(tarStream, localDirectory);
+            }
+            waitForExit(execChannel, command, errorStream);
+        } catch (JSchException ex) {
+            throw new IOException(ex);
+        } finally {
+            if (execChannel != null) {
+                execChannel.disconnect();
+
+            }
+        }
+    }
+
     @Override
     public void move(String oldRemotePath, String newRemotePath) throws IOException {
         ChannelSftp sftpChannel = null;
@@ -150,6 +328,42 @@ public class JSchClient implements SshClient {
         }
     }
 
+    private String executeCommandForOutput(String command) throws IOException {
+        ChannelExec execChannel = null;
+        try {
+            execChannel = (ChannelExec) session.openChannel("exec");
+            execChannel.setCommand(command);
+            ByteArrayOutputStream errorStream = new ByteArrayOutputStream();
+            execChannel.setErrStream(errorStream);
+            InputStream outputStream = execChannel.getInputStream();
+            execChannel.connect();
+            String output = RemoteShell.readFully(outputStream);
+            waitForExit(execChannel, command, errorStream);
+            return output;
+        } catch (JSchException ex) {
+            throw new IOException(ex);
+        } finally {
+            if (execChannel != null) {
+                execChannel.disconnect();
+
+            }
+        }
+    }
+
+    private void waitForExit(ChannelExec execChannel, String command, ByteArrayOutputStream errorStream) throws IOException {
+        try {
+            while (!execChannel.isClosed()) {
+                Thread.sleep(10);
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for command '" + command + "'");
+        }
+        if (execChannel.getExitStatus() != 0) {
+            throw new IOException("Command '" + command + "' failed with exit status " + execChannel.getExitStatus() + ": " + errorStream.toString().trim());
+        }
+    }
+
     @Override
     public void delete(String remotePath) throws IOException {
         ChannelSftp sftpChannel = null;
@@ -257,6 +471,85 @@ public class JSchClient implements SshClient {
         executeCommand(command);
     }
 
+    @Override
+    public RemoteDirectoryWatcher watch(String remoteDirectory, RemoteChangeListener listener) throws IOException {
+        if (isInotifyAvailable()) {
+            ChannelExec execChannel = null;
+            try {
+                execChannel = (ChannelExec) session.openChannel("exec");
+                execChannel.setCommand(InotifyDirectoryWatcher.buildCommand(remoteDirectory));
+                InputStream events = execChannel.getInputStream();
+                execChannel.connect();
+                ChannelExec watchChannel = execChannel;
+                return new InotifyDirectoryWatcher(remoteDirectory, events, watchChannel::disconnect, listener);
+            } catch (JSchException ex) {
+                if (execChannel != null) {
+                    execChannel.disconnect();
+                }
+                throw new IOException(ex);
+            }
+        }
+        return new PollingDirectoryWatcher(remoteDirectory, new PollingDirectoryWatcher.DirectoryLister() {
+            @Override
+            public long lastModified(String remoteDirectory) throws IOException {
+                return directoryLastModified(remoteDirectory);
+            }
+
+            @Override
+            public Map<String, PollingDirectoryWatcher.FileState> listFiles(String remoteDirectory) throws IOException {
+                return listFileStates(remoteDirectory);
+            }
+        }, listener);
+    }
+
+    private boolean isInotifyAvailable() {
+        try {
+            executeCommandForOutput(InotifyDirectoryWatcher.AVAILABILITY_COMMAND);
+            return true;
+        } catch (IOException ex) {
+            return false;
+        }
+    }
+
+    private long directoryLastModified(String remotePath) throws IOException {
+        ChannelSftp sftpChannel = null;
+        try {
+            sftpChannel = (ChannelSftp) session.openChannel("sftp");
+            sftpChannel.connect();
+            return sftpChannel.stat(remotePath).getMTime();
+        } catch (SftpException | JSchException ex) {
+            throw new IOException(ex);
+        } finally {
+            if (sftpChannel != null) {
+                sftpChannel.disconnect();
+
+            }
+        }
+    }
+
+    private Map<String, PollingDirectoryWatcher.FileState> listFileStates(String remotePath) throws IOException {
+        ChannelSftp sftpChannel = null;
+        Map<String, PollingDirectoryWatcher.FileState> fileStates = new HashMap<>();
+        try {
+            sftpChannel = (ChannelSftp) session.openChannel("sftp");
+            sftpChannel.connect();
+            sftpChannel.ls(remotePath, (ChannelSftp.LsEntry entry) -> {
+                if (entry.getAttrs().isReg()) {
+                    fileStates.put(entry.getFilename(), new PollingDirectoryWatcher.FileState(entry.getAttrs().getMTime(), entry.getAttrs().getSize()));
+                }
+                return ChannelSftp.LsEntrySelector.CONTINUE;
+            });
+            return fileStates;
+        } catch (SftpException | JSchException ex) {
+            throw new IOException(ex);
+        } finally {
+            if (sftpChannel != null) {
+                sftpChannel.disconnect();
+
+            }
+        }
+    }
+
     @Override
     public void close() throws Exception {
         disconnect();
@@ -0,0 +1,104 @@
+package com.github.sparsick.ssh4j;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Flow;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * Drains a publisher into a remote output stream on the calling thread. At most {@link #PREFETCH} chunks are requested
+ * ahead of what has been written, so a fast publisher is slowed down to the speed of the remote side.
+ */
+class OutputStreamSubscriber implements Flow.Subscriber<ByteBuffer> {
+
+    static final int PREFETCH = 16;
+
+    private static final Object COMPLETE = new Object();
+
+    private final BlockingQueue<Object> signals = new LinkedBlockingQueue<>();
+    private volatile Flow.Subscription subscription;
+    private volatile boolean cancelled;
+
+    private OutputStreamSubscriber() {
+    }
+
+    static void writeTo(Flow.Publisher<ByteBuffer> content, OutputStream outputStream) throws IOException {
+        OutputStreamSubscriber subscriber = new OutputStreamSubscriber();
+        content.subscribe(subscriber);
+        subscriber.drainTo(outputStream);
+    }
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+        if (this.subscription != null || cancelled) {
+            subscription.cancel();
+            return;
+        }
+        this.subscription = subscription;
+        subscription.request(PREFETCH);
+    }
+
+    @Override
+    public void onNext(ByteBuffer item) {
+        signals.add(item);
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+        signals.add(throwable);
+    }
+
+    @Override
+    public void onComplete() {
+        signals.add(COMPLETE);
+    }
+
+    private void drainTo(OutputStream outputStream) throws IOException {
+        int consumed = 0;
+        try {
+            while (true) {
+                Object signal = signals.take();
+                if (signal == COMPLETE) {
+                    return;
+                }
+                if (signal instanceof Throwable) {
+                    throw new IOException("Publisher failed", (Throwable) signal);
+                }
+                write((ByteBuffer) signal, outputStream);
+                // request in batches of half the prefetch to keep the publisher busy without per chunk signalling
+                if (++consumed == PREFETCH / 2) {
+                    subscription.request(consumed);
+                    consumed = 0;
+                }
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            cancel();
+            throw new InterruptedIOException("Interrupted while writing remote file");
+        } catch (IOException | RuntimeException ex) {
+            cancel();
+            throw ex;
+        }
+    }
+
+    private void write(ByteBuffer buffer, OutputStream outputStream) throws IOException {
+        if (buffer.hasArray()) {
+            outputStream.write(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+        } else {
+            byte[] bytes = new byte[buffer.remaining()];
+            buffer.duplicate().get(bytes);
+            outputStream.write(bytes);
+        }
+    }
+
+    private void cancel() {
+        cancelled = true;
+        Flow.Subscription currentSubscription = subscription;
+        if (currentSubscription != null) {
+            currentSubscription.cancel();
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package com.github.sparsick.ssh4j;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Detects changes by diffing snapshots keyed on name, modification time and size. A cheap stat of the directory
+ * decides whether a relisting is needed at all: creating, renaming or deleting a file updates the modification time of
+ * the directory. In place modifications do not, so the directory is relisted anyway after {@link #FULL_RESCAN_MILLIS}.
+ * The poll interval doubles up to {@link #MAX_INTERVAL_MILLIS} while nothing changes and drops back on each change.
+ */
+class PollingDirectoryWatcher implements RemoteDirectoryWatcher {
+
+    static final long MIN_INTERVAL_MILLIS = 1000;
+    static final long MAX_INTERVAL_MILLIS = 30000;
+    static final long FULL_RESCAN_MILLIS = 60000;
+
+    private final String remoteDirectory;
+    private final DirectoryLister lister;
+    private final RemoteChangeListener listener;
+    private final Thread thread;
+    private volatile boolean closed;
+
+    PollingDirectoryWatcher(String remoteDirectory, DirectoryLister lister, RemoteChangeListener listener) throws IOException {
+        this.remoteDirectory = remoteDirectory;
+        this.lister = lister;
+        this.listener = listener;
+        long directoryModified = lister.lastModified(remoteDirectory);
+        Map<String, FileState> snapshot = lister.listFiles(remoteDirectory);
+        thread = new Thread(() -> poll(directoryModified, snapshot), "remote-watch-" + remoteDirectory);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private void poll(long initialDirectoryModified, Map<String, FileState> initialSnapshot) {
+        long directoryModified = initialDirectoryModified;
+        Map<String, FileState> snapshot = initialSnapshot;
+        long lastListingNanos = System.nanoTime();
+        // directory timestamps have a resolution of one second, a change within the same second as the last listing
+        // does not move it, so one more listing is done after each detected change
+        boolean racy = true;
+        long interval = MIN_INTERVAL_MILLIS;
+        while (!closed) {
+            try {
+                Thread.sleep(interval);
+                long currentDirectoryModified = lister.lastModified(remoteDirectory);
+                boolean rescanDue = (System.nanoTime() - lastListingNanos) / 1000000 >= FULL_RESCAN_MILLIS;
+                boolean changed = false;
+                if (racy || rescanDue || currentDirectoryModified != directoryModified) {
+                    Map<String, FileState> currentSnapshot = lister.listFiles(remoteDirectory);
+                    lastListingNanos = System.nanoTime();
+                    changed = publishDifferences(snapshot, currentSnapshot);
+                    racy = currentDirectoryModified != directoryModified || changed;
+                    snapshot = currentSnapshot;
+                    directoryModified = currentDirectoryModified;
+                }
+                interval = changed ? MIN_INTERVAL_MILLIS : Math.min(MAX_INTERVAL_MILLIS, interval * 2);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (IOException ex) {
+                if (!closed) {
+                    listener.onError(ex);
+                }
+                interval = MAX_INTERVAL_MILLIS;
+            }
+        }
+    }
+
+    private boolean publishDifferences(Map<String, FileState> previous, Map<String, FileState> current) {
+        boolean changed = false;
+        for (Map.Entry<String, FileState> entry : current.entrySet()) {
+            FileState previousState = previous.get(entry.getKey());
+            if (previousState == null) {
+                listener.onChange(new RemoteChangeEvent(RemoteChangeEvent.Type.CREATED, entry.getKey()));
+                changed = true;
+            } else if (!previousState.equals(entry.getValue())) {
+                listener.onChange(new RemoteChangeEvent(RemoteChangeEvent.Type.MODIFIED, entry.getKey()));
+                changed = true;
+            }
+        }
+        for (String name : previous.keySet()) {
+            if (!current.containsKey(name)) {
+                listener.onChange(new RemoteChangeEvent(RemoteChangeEvent.Type.DELETED, name));
+                changed = true;
+            }
+        }
+        return changed;
+    }
+
+    // the poll thread only ends on close, a failed poll is repeated against the last snapshot
+    @Override
+    public boolean isWatching() {
+        return !closed;
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        thread.interrupt();
+    }
+
+    interface DirectoryLister {
+
+        long lastModified(String remoteDirectory) throws IOException;
+
+        Map<String, FileState> listFiles(String remoteDirectory) throws IOException;
+    }
+
+    static final class FileState {
+
+        private final long lastModified;
+        private final long size;
+
+        FileState(long lastModified, long size) {
+            this.lastModified = lastModified;
+            this.size = size;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof FileState)) {
+                return false;
+            }
+            FileState otherState = (FileState) other;
+            return lastModified == otherState.lastModified && size == otherState.size;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(lastModified, size);
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package com.github.sparsick.ssh4j;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+
+/**
+ * Input stream that pays for every chunk it reads at the given token buckets. Reads are capped at
+ * {@link InputStreamPublisher#CHUNK_SIZE} and at the burst of the smallest bucket, so a large buffer does not turn into
+ * one large burst and a bulk transfer never overdraws a bucket.
+ */
+class RateLimitedInputStream extends FilterInputStream {
+
+    private final List<TokenBucket> buckets;
+    private final boolean interactive;
+    private final int maxChunkSize;
+
+    RateLimitedInputStream(InputStream in, List<TokenBucket> buckets, boolean interactive) {
+        super(in);
+        this.buckets = buckets;
+        this.interactive = interactive;
+        this.maxChunkSize = TokenBucket.maxChunkSize(buckets, InputStreamPublisher.CHUNK_SIZE);
+    }
+
+    @Override
+    public int read() throws IOException {
+        int read = in.read();
+        if (read != -1) {
+            TokenBucket.acquire(buckets, 1, interactive);
+        }
+        return read;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        int read = in.read(b, off, Math.min(len, maxChunkSize));
+        if (read > 0) {
+            TokenBucket.acquire(buckets, read, interactive);
+        }
+        return read;
+    }
+}
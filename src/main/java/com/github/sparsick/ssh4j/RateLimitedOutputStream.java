@@ -0,0 +1,42 @@
+package com.github.sparsick.ssh4j;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+
+/**
+ * Output stream that pays for every chunk it writes at the given token buckets. Writes are split into pieces of at
+ * most {@link InputStreamPublisher#CHUNK_SIZE} and at most the burst of the smallest bucket.
+ */
+class RateLimitedOutputStream extends FilterOutputStream {
+
+    private final List<TokenBucket> buckets;
+    private final boolean interactive;
+    private final int maxChunkSize;
+
+    RateLimitedOutputStream(OutputStream out, List<TokenBucket> buckets, boolean interactive) {
+        super(out);
+        this.buckets = buckets;
+        this.interactive = interactive;
+        this.maxChunkSize = TokenBucket.maxChunkSize(buckets, InputStreamPublisher.CHUNK_SIZE);
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        TokenBucket.acquire(buckets, 1, interactive);
+        out.write(b);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        // FilterOutputStream would write byte by byte
+        while (len > 0) {
+            int chunk = Math.min(len, maxChunkSize);
+            TokenBucket.acquire(buckets, chunk, interactive);
+            out.write(b, off, chunk);
+            off += chunk;
+            len -= chunk;
+        }
+    }
+}
@@ -0,0 +1,513 @@
+package com.github.sparsick.ssh4j;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Decorates a {@link SshClient} so that a dropped connection is re-established before the next operation. Operations
+ * that failed because the connection died are retried with exponential backoff and full jitter, but only if they are
+ * safe to repeat. Non-idempotent operations (move, delete, execute) are never repeated after they were sent.
+ */
+public class ReconnectingSshClient implements SshClient {
+
+    private final SshClient delegate;
+    private final Object connectionLock = new Object();
+    private volatile String host;
+    private int maxRetries = 5;
+    private long initialBackoffMillis = 200;
+    private long maxBackoffMillis = 30000;
+
+    public ReconnectingSshClient(SshClient delegate) {
+        this.delegate = delegate;
+    }
+
+    public void setMaxRetries(int maxRetries) {
+        this.maxRetries = maxRetries;
+    }
+
+    public void setBackoff(long initialBackoffMillis, long maxBackoffMillis) {
+        this.initialBackoffMillis = initialBackoffMillis;
+        this.maxBackoffMillis = maxBackoffMillis;
+    }
+
+    @Override
+    public void authUserPassword(String user, String password) {
+        delegate.authUserPassword(user, password);
+    }
+
+    @Override
+    public void authUserPublicKey(String user, Path privateKey) {
+        delegate.authUserPublicKey(user, privateKey);
+    }
+
+    @Override
+    public void setKnownHosts(Path knownHosts) {
+        delegate.setKnownHosts(knownHosts);
+    }
+
+    @Override
+    public void setKeepAlive(int intervalSeconds, int maxMissedReplies) {
+        delegate.setKeepAlive(intervalSeconds, maxMissedReplies);
+    }
+
+    @Override
+    public void connect(String host) throws IOException {
+        synchronized (connectionLock) {
+            delegate.connect(host);
+            this.host = host;
+        }
+    }
+
+    @Override
+    public void disconnect() {
+        synchronized (connectionLock) {
+            host = null;
+            delegate.disconnect();
+        }
+    }
+
+    @Override
+    public boolean isConnected() {
+        return delegate.isConnected();
+    }
+
+    @Override
+    public void download(String remotePath, Path local) throws IOException {
+        boolean localExisted = Files.exists(local);
+        invoke(() -> {
+            try {
+                delegate.download(remotePath, local);
+            } catch (IOException ex) {
+                if (!localExisted) {
+                    // remove the partial file, otherwise the retry fails because the target already exists
+                    Files.deleteIfExists(local);
+                }
+                throw ex;
+            }
+            return null;
+        }, true);
+    }
+
+    @Override
+    public void upload(Path local, String remotePath) throws IOException {
+        invoke(() -> {
+            delegate.upload(local, remotePath);
+            return null;
+        }, true);
+    }
+
+    @Override
+    public void download(String remotePath, Path local, ChecksumAlgorithm checksumAlgorithm) throws IOException {
+        boolean localExisted = Files.exists(local);
+        invoke(() -> {
+            try {
+                delegate.download(remotePath, local, checksumAlgorithm);
+            } catch (IOException ex) {
+                if (!localExisted) {
+                    Files.deleteIfExists(local);
+                }
+                throw ex;
+            }
+            return null;
+        }, true);
+    }
+
+    @Override
+    public void upload(Path local, String remotePath, ChecksumAlgorithm checksumAlgorithm) throws IOException {
+        invoke(() -> {
+            delegate.upload(local, remotePath, checksumAlgorithm);
+            return null;
+        }, true);
+    }
+
+    @Override
+    public Flow.Publisher<ByteBuffer> read(String remotePath) {
+        // subscribe must not block, so the connection is checked on the read executor once data is requested
+        return subscriber -> subscriber.onSubscribe(new ReconnectingSubscription(remotePath, subscriber));
+    }
+
+    @Override
+    public void write(String remotePath, Flow.Publisher<ByteBuffer> content) throws IOException {
+        // a publisher cannot be replayed in general, so a failed write is never retried
+        invoke(() -> {
+            delegate.write(remotePath, content);
+            return null;
+        }, false);
+    }
+
+    @Override
+    public void uploadDirectory(Path localDirectory, String remoteDirectory, boolean compress) throws IOException {
+        invoke(() -> {
+            delegate.uploadDirectory(localDirectory, remoteDirectory, compress);
+            return null;
+        }, true);
+    }
+
+    @Override
+    public void downloadDirectory(String remoteDirectory, Path localDirectory, boolean compress) throws IOException {
+        invoke(() -> {
+            delegate.downloadDirectory(remoteDirectory, localDirectory, compress);
+            return null;
+        }, true);
+    }
+
+    @Override
+    public void move(String oldRemotePath, String newRemotePath) throws IOException {
+        invoke(() -> {
+            delegate.move(oldRemotePath, newRemotePath);
+            return null;
+        }, false);
+    }
+
+    @Override
+    public void copy(String oldRemotePath, String newRemotePath) throws IOException {
+        invoke(() -> {
+            delegate.copy(oldRemotePath, newRemotePath);
+            return null;
+        }, true);
+    }
+
+    @Override
+    public void delete(String remotePath) throws IOException {
+        invoke(() -> {
+            delegate.delete(remotePath);
+            return null;
+        }, false);
+    }
+
+    @Override
+    public boolean fileExists(String remotePath) throws IOException {
+        return invoke(() -> delegate.fileExists(remotePath), true);
+    }
+
+    @Override
+    public List<String> listChildrenNames(String remotePath) throws IOException {
+        return invoke(() -> delegate.listChildrenNames(remotePath), true);
+    }
+
+    @Override
+    public List<String> listChildrenFolderNames(String remotePath) throws IOException {
+        return invoke(() -> delegate.listChildrenFolderNames(remotePath), true);
+    }
+
+    @Override
+    public List<String> listChildrenFileNames(String remotePath) throws IOException {
+        return invoke(() -> delegate.listChildrenFileNames(remotePath), true);
+    }
+
+    @Override
+    public void execute(String command) throws IOException {
+        invoke(() -> {
+            delegate.execute(command);
+            return null;
+        }, false);
+    }
+
+    /**
+     * The returned watcher survives connection loss: after the watch reported an error, the connection is restored and a
+     * watcher that stopped is set up again. Changes made while a stopped watcher was down are not replayed.
+     */
+    @Override
+    public RemoteDirectoryWatcher watch(String remoteDirectory, RemoteChangeListener listener) throws IOException {
+        RewatchingDirectoryWatcher watcher = new RewatchingDirectoryWatcher(remoteDirectory, listener);
+        watcher.start();
+        return watcher;
+    }
+
+    private <T> T invoke(RemoteOperation<T> operation, boolean idempotent) throws IOException {
+        int attempt = 0;
+        while (true) {
+            ensureConnected();
+            try {
+                return operation.execute();
+            } catch (IOException ex) {
+                // a failure on a live connection is a real error (e.g. missing file), not a dropped session
+                if (!idempotent || attempt >= maxRetries || delegate.isConnected()) {
+                    throw ex;
+                }
+                backoff(++attempt);
+            }
+        }
+    }
+
+    private void ensureConnected() throws IOException {
+        if (host == null || delegate.isConnected()) {
+            return;
+        }
+        // concurrent callers that all saw the dead session must not tear down the session another one just rebuilt
+        synchronized (connectionLock) {
+            reconnect();
+        }
+    }
+
+    private void reconnect() throws IOException {
+        int attempt = 0;
+        while (true) {
+            String currentHost = host;
+            if (currentHost == null || delegate.isConnected()) {
+                return;
+            }
+            try {
+                delegate.disconnect();
+                delegate.connect(currentHost);
+                return;
+            } catch (IOException ex) {
+                if (attempt >= maxRetries) {
+                    throw ex;
+                }
+                backoff(++attempt);
+            }
+        }
+    }
+
+    private void backoff(int attempt) throws InterruptedIOException {
+        long ceiling = Math.min(maxBackoffMillis, initialBackoffMillis << Math.min(attempt - 1, 30));
+        try {
+            Thread.sleep(ThreadLocalRandom.current().nextLong(ceiling + 1));
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting to reconnect");
+        }
+    }
+
+    @Override
+    public void close() throws Exception {
+        disconnect();
+    }
+
+    private class RewatchingDirectoryWatcher implements RemoteDirectoryWatcher, RemoteChangeListener {
+
+        private final String remoteDirectory;
+        private final RemoteChangeListener listener;
+        private RemoteDirectoryWatcher currentWatcher;
+        private boolean rewatching;
+        private boolean closed;
+
+        RewatchingDirectoryWatcher(String remoteDirectory, RemoteChangeListener listener) {
+            this.remoteDirectory = remoteDirectory;
+            this.listener = listener;
+        }
+
+        void start() throws IOException {
+            RemoteDirectoryWatcher watcher = invoke(() -> delegate.watch(remoteDirectory, this), true);
+            boolean installed;
+            synchronized (this) {
+                // an error reported before this point already started a rewatch, which installs its own watcher
+                installed = currentWatcher == null && !rewatching && !closed;
+                if (installed) {
+                    currentWatcher = watcher;
+                }
+            }
+            if (!installed) {
+                watcher.close();
+            }
+        }
+
+        @Override
+        public void onChange(RemoteChangeEvent event) {
+            if (!isClosed()) {
+                listener.onChange(event);
+            }
+        }
+
+        @Override
+        public void onError(IOException ex) {
+            synchronized (this) {
+                if (closed) {
+                    return;
+                }
+                if (rewatching) {
+                    listener.onError(ex);
+                    return;
+                }
+                rewatching = true;
+            }
+            listener.onError(ex);
+            // the failing watcher calls from its own thread, which must not be blocked by the reconnect
+            Thread thread = new Thread(this::recover, "remote-rewatch-" + remoteDirectory);
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        private void recover() {
+            int attempt = 0;
+            while (!isClosed()) {
+                try {
+                    ensureConnected();
+                    RemoteDirectoryWatcher failedWatcher;
+                    synchronized (this) {
+                        // a watcher that is still running keeps its state and catches up on the new connection, a
+                        // fresh watch would lose the changes made in between
+                        if (currentWatcher != null && currentWatcher.isWatching()) {
+                            rewatching = false;
+                            return;
+                        }
+                        failedWatcher = currentWatcher;
+                        currentWatcher = null;
+                    }
+                    if (failedWatcher != null) {
+                        failedWatcher.close();
+                    }
+                    RemoteDirectoryWatcher watcher = invoke(() -> delegate.watch(remoteDirectory, this), true);
+                    synchronized (this) {
+                        if (!closed) {
+                            currentWatcher = watcher;
+                            rewatching = false;
+                            return;
+                        }
+                    }
+                    watcher.close();
+                    return;
+                } catch (InterruptedIOException ex) {
+                    return;
+                } catch (IOException ex) {
+                    try {
+                        backoff(++attempt);
+                    } catch (InterruptedIOException interrupted) {
+                        return;
+                    }
+                }
+            }
+        }
+
+        @Override
+        public synchronized boolean isWatching() {
+            return !closed;
+        }
+
+        private synchronized boolean isClosed() {
+            return closed;
+        }
+
+        @Override
+        public void close() {
+            RemoteDirectoryWatcher watcher;
+            synchronized (this) {
+                closed = true;
+                watcher = currentWatcher;
+                currentWatcher = null;
+            }
+            if (watcher != null) {
+                watcher.close();
+            }
+        }
+    }
+
+    /**
+     * Requests and cancellations that arrive before the delegate's stream is subscribed are buffered and passed on once
+     * the connection is back.
+     */
+    private class ReconnectingSubscription implements Flow.Subscription, Flow.Subscriber<ByteBuffer> {
+
+        private final String remotePath;
+        private final Flow.Subscriber<? super ByteBuffer> subscriber;
+        private Flow.Subscription upstream;
+        private long pendingDemand;
+        private boolean invalidRequest;
+        private boolean started;
+        private boolean cancelled;
+
+        ReconnectingSubscription(String remotePath, Flow.Subscriber<? super ByteBuffer> subscriber) {
+            this.remotePath = remotePath;
+            this.subscriber = subscriber;
+        }
+
+        @Override
+        public void request(long n) {
+            Flow.Subscription current;
+            boolean start = false;
+            synchronized (this) {
+                current = upstream;
+                if (current == null) {
+                    if (n <= 0) {
+                        invalidRequest = true;
+                    } else {
+                        pendingDemand = pendingDemand + n < 0 ? Long.MAX_VALUE : pendingDemand + n;
+                    }
+                    start = !started && !cancelled;
+                    started = true;
+                }
+            }
+            if (current != null) {
+                current.request(n);
+            } else if (start) {
+                InputStreamPublisher.READ_EXECUTOR.execute(this::connectAndSubscribe);
+            }
+        }
+
+        @Override
+        public void cancel() {
+            Flow.Subscription current;
+            synchronized (this) {
+                cancelled = true;
+                current = upstream;
+            }
+            if (current != null) {
+                current.cancel();
+            }
+        }
+
+        private void connectAndSubscribe() {
+            try {
+                ensureConnected();
+            } catch (IOException ex) {
+                if (!isCancelled()) {
+                    subscriber.onError(ex);
+                }
+                return;
+            }
+            delegate.read(remotePath).subscribe(this);
+        }
+
+        private synchronized boolean isCancelled() {
+            return cancelled;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            long demand;
+            boolean invalid;
+            boolean cancel;
+            synchronized (this) {
+                upstream = subscription;
+                demand = pendingDemand;
+                invalid = invalidRequest;
+                cancel = cancelled;
+            }
+            if (cancel) {
+                subscription.cancel();
+            } else if (invalid) {
+                subscription.request(0);
+            } else if (demand > 0) {
+                subscription.request(demand);
+            }
+        }
+
+        @Override
+        public void onNext(ByteBuffer item) {
+            subscriber.onNext(item);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            subscriber.onError(throwable);
+        }
+
+        @Override
+        public void onComplete() {
+            subscriber.onComplete();
+        }
+    }
+
+    @FunctionalInterface
+    private interface RemoteOperation<T> {
+
+        T execute() throws IOException;
+    }
+}
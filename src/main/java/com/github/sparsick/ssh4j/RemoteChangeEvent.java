@@ -0,0 +1,31 @@
+package com.github.sparsick.ssh4j;
+
+public final class RemoteChangeEvent {
+
+    public enum Type {
+        CREATED,
+        MODIFIED,
+        DELETED
+    }
+
+    private final Type type;
+    private final String fileName;
+
+    public RemoteChangeEvent(Type type, String fileName) {
+        this.type = type;
+        this.fileName = fileName;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public String getFileName() {
+        return fileName;
+    }
+
+    @Override
+    public String toString() {
+        return type + " " + fileName;
+    }
+}
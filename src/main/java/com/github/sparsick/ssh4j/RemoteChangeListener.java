@@ -0,0 +1,13 @@
+package com.github.sparsick.ssh4j;
+
+import java.io.IOException;
+
+@FunctionalInterface
+public interface RemoteChangeListener {
+
+    void onChange(RemoteChangeEvent event);
+
+    default void onError(IOException ex) {
+        // watching goes on by default, override to react on connection problems
+    }
+}
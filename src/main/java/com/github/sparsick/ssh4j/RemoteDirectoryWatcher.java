@@ -0,0 +1,13 @@
+package com.github.sparsick.ssh4j;
+
+public interface RemoteDirectoryWatcher extends AutoCloseable {
+
+    /**
+     * Whether changes are still reported. A watcher may stop for good after it reported an error, a watcher that keeps
+     * watching catches up with the changes it missed on its own once the connection is back.
+     */
+    boolean isWatching();
+
+    @Override
+    void close();
+}
@@ -1,8 +1,10 @@
 package com.github.sparsick.ssh4j;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.nio.file.Path;
 import java.util.List;
+import java.util.concurrent.Flow;
 
 
 public interface SshClient extends AutoCloseable {
@@ -13,14 +15,30 @@ public interface SshClient extends AutoCloseable {
     
     void setKnownHosts(Path knownHosts);
     
+    void setKeepAlive(int intervalSeconds, int maxMissedReplies);
+    
     void connect(String host) throws IOException;
     
     void disconnect();
     
+    boolean isConnected();
+    
     void download(String remotePath, Path local) throws IOException;
     
     void upload(Path local, String remotePath) throws IOException;
     
+    void download(String remotePath, Path local, ChecksumAlgorithm checksumAlgorithm) throws IOException;
+    
+    void upload(Path local, String remotePath, ChecksumAlgorithm checksumAlgorithm) throws IOException;
+    
+    Flow.Publisher<ByteBuffer> read(String remotePath);
+    
+    void write(String remotePath, Flow.Publisher<ByteBuffer> content) throws IOException;
+    
+    void uploadDirectory(Path localDirectory, String remoteDirectory, boolean compress) throws IOException;
+    
+    void downloadDirectory(String remoteDirectory, Path localDirectory, boolean compress) throws IOException;
+    
     void move(String oldRemotePath, String newRemotePath) throws IOException;
     
     void copy(String oldRemotePath, String newRemotePath) throws IOException;
@@ -37,4 +55,6 @@ public interface SshClient extends AutoCloseable {
     
     void execute(String command) throws IOException;
     
+    RemoteDirectoryWatcher watch(String remoteDirectory, RemoteChangeListener listener) throws IOException;
+    
 }
@@ -1,14 +1,46 @@
 package com.github.sparsick.ssh4j;
 
+import java.io.FilterInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
 import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Flow;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import net.schmizz.keepalive.KeepAliveProvider;
+import net.schmizz.keepalive.KeepAliveRunner;
+import net.schmizz.sshj.DefaultConfig;
 import net.schmizz.sshj.SSHClient;
+import net.schmizz.sshj.common.Buffer;
+import net.schmizz.sshj.common.IOUtils;
+import net.schmizz.sshj.common.Message;
+import net.schmizz.sshj.common.SSHPacket;
 import net.schmizz.sshj.connection.channel.direct.Session;
+import net.schmizz.sshj.sftp.OpenMode;
+import net.schmizz.sshj.sftp.PacketType;
+import net.schmizz.sshj.sftp.RemoteFile;
 import net.schmizz.sshj.sftp.RemoteResourceFilter;
 import net.schmizz.sshj.sftp.RemoteResourceInfo;
+import net.schmizz.sshj.sftp.Request;
+import net.schmizz.sshj.sftp.Response;
 import net.schmizz.sshj.sftp.SFTPClient;
+import net.schmizz.sshj.sftp.SFTPEngine;
+import net.schmizz.sshj.sftp.SFTPException;
 import net.schmizz.sshj.xfer.FileSystemFile;
 
 public class SshJClient implements SshClient {
@@ -17,6 +49,8 @@ public class SshJClient implements SshClient {
     private String password;
     private Path privateKey;
     private Path knownHosts;
+    private int keepAliveInterval;
+    private int keepAliveMaxMissedReplies;
     private SSHClient sshClient;
 
     @Override
@@ -36,9 +70,22 @@ public class SshJClient implements SshClient {
         this.knownHosts = knownHosts;
     }
 
+    @Override
+    public void setKeepAlive(int intervalSeconds, int maxMissedReplies) {
+        this.keepAliveInterval = intervalSeconds;
+        this.keepAliveMaxMissedReplies = maxMissedReplies;
+    }
+
     @Override
     public void connect(String host) throws IOException {
-        sshClient = new SSHClient();
+        if (sshClient != null) {
+            disconnect();
+        }
+        DefaultConfig config = new DefaultConfig();
+        if (keepAliveInterval > 0) {
+            config.setKeepAliveProvider(KeepAliveProvider.KEEP_ALIVE);
+        }
+        sshClient = new SSHClient(config);
         if (knownHosts == null) {
             sshClient.loadKnownHosts();
         } else {
@@ -46,6 +93,11 @@ public class SshJClient implements SshClient {
         }
 
         sshClient.connect(host);
+        if (keepAliveInterval > 0) {
+            KeepAliveRunner keepAlive = (KeepAliveRunner) sshClient.getConnection().getKeepAlive();
+            keepAlive.setKeepAliveInterval(keepAliveInterval);
+            keepAlive.setMaxAliveCount(keepAliveMaxMissedReplies);
+        }
 
         if (privateKey != null) {
             sshClient.authPublickey(user, privateKey.toString());
@@ -65,6 +117,11 @@ public class SshJClient implements SshClient {
         }
     }
 
+    @Override
+    public boolean isConnected() {
+        return sshClient != null && sshClient.isConnected() && sshClient.isAuthenticated();
+    }
+
     @Override
     public void download(String remotePath, Path local) throws IOException {
         try (SFTPClient sftpClient = sshClient.newSFTPClient()) {
@@ -79,6 +136,134 @@ public class SshJClient implements SshClient {
         }
     }
 
+    @Override
+    public void download(String remotePath, Path local, ChecksumAlgorithm checksumAlgorithm) throws IOException {
+        MessageDigest digest = checksumAlgorithm.newDigest();
+        try (SFTPClient sftpClient = sshClient.newSFTPClient();
+                RemoteFile remoteFile = sftpClient.open(remotePath)) {
+            try (InputStream inputStream = new DigestInputStream(remoteFile.new RemoteFileInputStream(), digest)) {
+                Files.copy(inputStream, local, StandardCopyOption.REPLACE_EXISTING);
+            }
+            verifyChecksum(sftpClient, remotePath, checksumAlgorithm, digest);
+        }
+    }
+
+    @Override
+    public void upload(Path local, String remotePath, ChecksumAlgorithm checksumAlgorithm) throws IOException {
+        MessageDigest digest = checksumAlgorithm.newDigest();
+        try (SFTPClient sftpClient = sshClient.newSFTPClient()) {
+            try (RemoteFile remoteFile = sftpClient.open(remotePath, EnumSet.of(OpenMode.WRITE, OpenMode.CREAT, OpenMode.TRUNC));
+                    OutputStream outputStream = new DigestOutputStream(remoteFile.new RemoteFileOutputStream(), digest)) {
+                Files.copy(local, outputStream);
+            }
+            verifyChecksum(sftpClient, remotePath, checksumAlgorithm, digest);
+        }
+    }
+
+    private void verifyChecksum(SFTPClient sftpClient, String remotePath, ChecksumAlgorithm checksumAlgorithm, MessageDigest digest) throws IOException {
+        String localChecksum = ChecksumAlgorithm.toHex(digest.digest());
+        String remoteChecksum = checkFile(sftpClient, remotePath, checksumAlgorithm);
+        if (remoteChecksum == null) {
+            remoteChecksum = checksumAlgorithm.parseRemoteCommandOutput(executeForOutput(checksumAlgorithm.buildRemoteCommand(remotePath)));
+        }
+        if (!localChecksum.equals(remoteChecksum)) {
+            throw new ChecksumMismatchException(remotePath, checksumAlgorithm, localChecksum, remoteChecksum);
+        }
+    }
+
+    private String checkFile(SFTPClient sftpClient, String remotePath, ChecksumAlgorithm checksumAlgorithm) throws IOException {
+        if (checksumAlgorithm.getCheckFileName() == null) {
+            return null;
+        }
+        SFTPEngine engine = sftpClient.getSFTPEngine();
+        // SFTP check-file extension: whole file (offset 0, length 0) as a single block (block size 0)
+        Request request = engine.newExtendedRequest("check-file-name")
+                .putString(remotePath)
+                .putString(checksumAlgorithm.getCheckFileName())
+                .putUInt64(0)
+                .putUInt64(0)
+                .putUInt32(0);
+        Response response = engine.request(request).retrieve(engine.getTimeoutMs(), TimeUnit.MILLISECONDS);
+        if (response.getType() != PacketType.EXTENDED_REPLY) {
+            // most servers (e.g. OpenSSH) do not implement the extension and answer with an unsupported status
+            return null;
+        }
+        try {
+            // reply: string "check-file", string hash-algo-used, byte[] hash
+            response.readString();
+            String usedAlgorithm = response.readString();
+            if (!checksumAlgorithm.getCheckFileName().equals(usedAlgorithm)) {
+                // the request names a single algorithm, a server answering with another one is not trusted
+                return null;
+            }
+            byte[] checksum = new byte[response.available()];
+            response.readRawBytes(checksum);
+            return ChecksumAlgorithm.toHex(checksum);
+        } catch (Buffer.BufferException ex) {
+            throw new SFTPException("Malformed check-file reply", ex);
+        }
+    }
+
+    @Override
+    public Flow.Publisher<ByteBuffer> read(String remotePath) {
+        return new InputStreamPublisher(() -> {
+            SFTPClient sftpClient = sshClient.newSFTPClient();
+            RemoteFile remoteFile;
+            try {
+                remoteFile = sftpClient.open(remotePath);
+            } catch (IOException ex) {
+                sftpClient.close();
+                throw ex;
+            }
+            return new FilterInputStream(remoteFile.new RemoteFileInputStream()) {
+                @Override
+                public void close() throws IOException {
+                    try (SFTPClient closingClient = sftpClient; RemoteFile closingFile = remoteFile) {
+                        super.close();
+                    }
+                }
+            };
+        });
+    }
+
+    @Override
+    public void write(String remotePath, Flow.Publisher<ByteBuffer> content) throws IOException {
+        try (SFTPClient sftpClient = sshClient.newSFTPClient();
+                RemoteFile remoteFile = sftpClient.open(remotePath, EnumSet.of(OpenMode.WRITE, OpenMode.CREAT, OpenMode.TRUNC));
+                OutputStream outputStream = remoteFile.new RemoteFileOutputStream()) {
+            OutputStreamSubscriber.writeTo(content, outputStream);
+        }
+    }
+
+    @Override
+    public void uploadDirectory(Path localDirectory, String remoteDirectory, boolean compress) throws IOException {
+        String quotedDirectory = RemoteShell.quote(remoteDirectory);
+        String command = "mkdir -p " + quotedDirectory + " && tar -x" + (compress ? "z" : "") + "f - -C " + quotedDirectory;
+        try (Session session = sshClient.startSession()) {
+            Session.Command sessionCommand = session.exec(command);
+            Future<String> errors = drainErrors(sessionCommand);
+            try (OutputStream tarStream = TarArchive.openOutputStream(sessionCommand.getOutputStream(), compress)) {
+                TarArchive.write(localDirectory, tarStream);
+            }
+            sendEof(sessionCommand);
+            waitForExit(sessionCommand, command, errors);
+        }
+    }
+
+    @Override
+    public void downloadDirectory(String remoteDirectory, Path localDirectory, boolean compress) throws IOException {
+        String command = "tar -c" + (compress ? "z" : "") + "f - -C " + RemoteShell.quote(remoteDirectory) + " .";
+        try (Session session = sshClient.startSession()) {
+            Session.Command sessionCommand = session.exec(command);
+            Future<String> errors = drainErrors(sessionCommand);
+            Files.createDirectories(localDirectory);
+            try (InputStream tarStream = TarArchive.openInputStream(sessionCommand.getInputStream(), compress)) {
+                TarArchive.extract(tarStream, localDirectory);
+            }
+            waitForExit(sessionCommand, command, errors);
+        }
+    }
+
     @Override
     public void move(String oldRemotePath, String newRemotePath) throws IOException {
         try (SFTPClient sftpClient = sshClient.newSFTPClient()) {
@@ -140,6 +325,92 @@ public class SshJClient implements SshClient {
         }
     }
 
+    @Override
+    public RemoteDirectoryWatcher watch(String remoteDirectory, RemoteChangeListener listener) throws IOException {
+        if (isInotifyAvailable()) {
+            Session session = sshClient.startSession();
+            try {
+                Session.Command sessionCommand = session.exec(InotifyDirectoryWatcher.buildCommand(remoteDirectory));
+                return new InotifyDirectoryWatcher(remoteDirectory, sessionCommand.getInputStream(), session, listener);
+            } catch (IOException ex) {
+                session.close();
+                throw ex;
+            }
+        }
+        return new PollingDirectoryWatcher(remoteDirectory, new PollingDirectoryWatcher.DirectoryLister() {
+            @Override
+            public long lastModified(String remoteDirectory) throws IOException {
+                try (SFTPClient sftpClient = sshClient.newSFTPClient()) {
+                    return sftpClient.stat(remoteDirectory).getMtime();
+                }
+            }
+
+            @Override
+            public Map<String, PollingDirectoryWatcher.FileState> listFiles(String remoteDirectory) throws IOException {
+                try (SFTPClient sftpClient = sshClient.newSFTPClient()) {
+                    Map<String, PollingDirectoryWatcher.FileState> fileStates = new HashMap<>();
+                    for (RemoteResourceInfo fileInfo : sftpClient.ls(remoteDirectory, RemoteResourceInfo::isRegularFile)) {
+                        fileStates.put(fileInfo.getName(), new PollingDirectoryWatcher.FileState(fileInfo.getAttributes().getMtime(), fileInfo.getAttributes().getSize()));
+                    }
+                    return fileStates;
+                }
+            }
+        }, listener);
+    }
+
+    private boolean isInotifyAvailable() {
+        try {
+            executeForOutput(InotifyDirectoryWatcher.AVAILABILITY_COMMAND);
+            return true;
+        } catch (IOException ex) {
+            return false;
+        }
+    }
+
+    private String executeForOutput(String command) throws IOException {
+        try (Session session = sshClient.startSession()) {
+            Session.Command sessionCommand = session.exec(command);
+            Future<String> errors = drainErrors(sessionCommand);
+            String output = IOUtils.readFully(sessionCommand.getInputStream()).toString("UTF-8");
+            waitForExit(sessionCommand, command, errors);
+            return output;
+        }
+    }
+
+    private void sendEof(Session.Command sessionCommand) throws IOException {
+        // closing the channel output stream does not signal EOF in this sshj version, remote tar would wait forever
+        sshClient.getTransport().write(new SSHPacket(Message.CHANNEL_EOF).putUInt32(sessionCommand.getRecipient()));
+    }
+
+    // stdout and stderr share the channel window, a command that fills stderr while stdout is still being read would
+    // stall both, so stderr is read on its own thread from the start
+    private static Future<String> drainErrors(Session.Command sessionCommand) {
+        FutureTask<String> errors = new FutureTask<>(() -> IOUtils.readFully(sessionCommand.getErrorStream()).toString("UTF-8"));
+        Thread thread = new Thread(errors, "remote-stderr");
+        thread.setDaemon(true);
+        thread.start();
+        return errors;
+    }
+
+    private void waitForExit(Session.Command sessionCommand, String command, Future<String> errors) throws IOException {
+        sessionCommand.join();
+        Integer exitStatus = sessionCommand.getExitStatus();
+        if (exitStatus == null || exitStatus != 0) {
+            throw new IOException("Command '" + command + "' failed with exit status " + exitStatus + ": " + readErrors(errors).trim());
+        }
+    }
+
+    private static String readErrors(Future<String> errors) throws IOException {
+        try {
+            return errors.get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while reading the error output");
+        } catch (ExecutionException ex) {
+            return "(error output unreadable: " + ex.getCause() + ")";
+        }
+    }
+
     @Override
     public void close() throws Exception {
         sshClient.close();
@@ -0,0 +1,394 @@
+package com.github.sparsick.ssh4j;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.nio.file.attribute.PosixFilePermission;
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Minimal tar writer and reader, just enough to stream a directory tree to and from a remote {@code tar}. Writes GNU
+ * tar entries (long names as {@code ././@LongLink}, sizes beyond 8 GiB in base-256) and reads GNU, ustar and pax
+ * archives. Only directories, regular files and hard links to regular files are transferred, everything else is
+ * skipped. GNU and busybox tar store every further name of a hard linked file as a link entry, such an entry is
+ * extracted as a copy of the file it points to.
+ */
+final class TarArchive {
+
+    private static final int BLOCK_SIZE = 512;
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int NAME_LENGTH = 100;
+    private static final byte TYPE_FILE = '0';
+    private static final byte TYPE_HARD_LINK = '1';
+    private static final byte TYPE_CONTIGUOUS_FILE = '7';
+    private static final byte TYPE_DIRECTORY = '5';
+    private static final byte TYPE_GNU_LONG_NAME = 'L';
+    private static final byte TYPE_GNU_LONG_LINK_NAME = 'K';
+    private static final byte TYPE_PAX_HEADER = 'x';
+    private static final PosixFilePermission[] PERMISSIONS = PosixFilePermission.values();
+
+    private TarArchive() {
+    }
+
+    static OutputStream openOutputStream(OutputStream outputStream, boolean compress) throws IOException {
+        return compress ? new GZIPOutputStream(outputStream, BUFFER_SIZE) : new BufferedOutputStream(outputStream, BUFFER_SIZE);
+    }
+
+    static InputStream openInputStream(InputStream inputStream, boolean compress) throws IOException {
+        return compress ? new GZIPInputStream(inputStream, BUFFER_SIZE) : new BufferedInputStream(inputStream, BUFFER_SIZE);
+    }
+
+    static void write(Path directory, OutputStream outputStream) throws IOException {
+        Files.walkFileTree(directory, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+                if (!dir.equals(directory)) {
+                    writeHeader(outputStream, entryName(directory, dir) + "/", TYPE_DIRECTORY, 0, attrs.lastModifiedTime(), mode(dir, 0755));
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                if (attrs.isRegularFile()) {
+                    writeHeader(outputStream, entryName(directory, file), TYPE_FILE, attrs.size(), attrs.lastModifiedTime(), mode(file, 0644));
+                    long copied = Files.copy(file, outputStream);
+                    if (copied != attrs.size()) {
+                        throw new IOException(file + " changed while it was archived.");
+                    }
+                    writePadding(outputStream, copied);
+                }
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        outputStream.write(new byte[BLOCK_SIZE * 2]);
+        outputStream.flush();
+    }
+
+    /**
+     * Extracts all entries into {@code directory} and drains the rest of the stream, so that the sending side never
+     * blocks on trailing padding.
+     */
+    static void extract(InputStream inputStream, Path directory) throws IOException {
+        Path root = directory.toAbsolutePath().normalize();
+        byte[] header = new byte[BLOCK_SIZE];
+        String longName = null;
+        String longLinkName = null;
+        while (readHeader(inputStream, header)) {
+            String name = longName != null ? longName : parseName(header);
+            String linkName = longLinkName != null ? longLinkName : trimNul(new String(header, 157, NAME_LENGTH, StandardCharsets.UTF_8));
+            longName = null;
+            longLinkName = null;
+            long size = parseNumber(header, 124, 12);
+            byte type = header[156];
+            if (type == TYPE_GNU_LONG_NAME) {
+                longName = trimNul(new String(readData(inputStream, size), StandardCharsets.UTF_8));
+            } else if (type == TYPE_GNU_LONG_LINK_NAME) {
+                longLinkName = trimNul(new String(readData(inputStream, size), StandardCharsets.UTF_8));
+            } else if (type == TYPE_PAX_HEADER) {
+                String records = new String(readData(inputStream, size), StandardCharsets.UTF_8);
+                longName = parsePaxRecord(records, "path");
+                longLinkName = parsePaxRecord(records, "linkpath");
+            } else if (type == TYPE_DIRECTORY) {
+                Path target = resolve(root, name);
+                if (target != null) {
+                    Files.createDirectories(target);
+                }
+                skip(inputStream, padded(size));
+            } else if (type == TYPE_FILE || type == 0 || type == TYPE_CONTIGUOUS_FILE) {
+                Path target = resolve(root, name);
+                if (target == null) {
+                    skip(inputStream, padded(size));
+                } else {
+                    extractFile(inputStream, target, size, header);
+                }
+            } else if (type == TYPE_HARD_LINK) {
+                extractHardLink(resolve(root, name), resolve(root, linkName), name, linkName);
+                skip(inputStream, padded(size));
+            } else {
+                skip(inputStream, padded(size));
+            }
+        }
+        byte[] buffer = new byte[BUFFER_SIZE];
+        while (inputStream.read(buffer) != -1) {
+            // drain end of archive blocks and record padding
+        }
+    }
+
+    private static void extractFile(InputStream inputStream, Path target, long size, byte[] header) throws IOException {
+        Files.createDirectories(target.getParent());
+        try (OutputStream outputStream = new BufferedOutputStream(Files.newOutputStream(target), BUFFER_SIZE)) {
+            copy(inputStream, outputStream, size);
+        }
+        skip(inputStream, padded(size) - size);
+        setMode(target, (int) parseNumber(header, 100, 8));
+        Files.setLastModifiedTime(target, FileTime.from(parseNumber(header, 136, 12), TimeUnit.SECONDS));
+    }
+
+    // a copy instead of a link, the target file system may not support hard links and the archive may come from elsewhere
+    private static void extractHardLink(Path target, Path linkTarget, String name, String linkName) throws IOException {
+        if (target == null || linkTarget == null) {
+            return;
+        }
+        if (!Files.isRegularFile(linkTarget, LinkOption.NOFOLLOW_LINKS)) {
+            throw new IOException("Tar entry " + name + " links to " + linkName + ", which is not a file extracted before");
+        }
+        Files.createDirectories(target.getParent());
+        Files.copy(linkTarget, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.COPY_ATTRIBUTES);
+    }
+
+    private static String entryName(Path directory, Path path) {
+        StringBuilder name = new StringBuilder();
+        for (Path element : directory.relativize(path)) {
+            if (name.length() > 0) {
+                name.append('/');
+            }
+            name.append(element.toString());
+        }
+        return name.toString();
+    }
+
+    private static Path resolve(Path root, String name) throws IOException {
+        if (name.startsWith("/")) {
+            throw new IOException("Tar entry " + name + " has an absolute name");
+        }
+        String relativeName = name;
+        while (relativeName.startsWith("./")) {
+            relativeName = relativeName.substring(2);
+        }
+        if (relativeName.isEmpty() || relativeName.equals(".")) {
+            return null;
+        }
+        Path target = root.resolve(relativeName).normalize();
+        if (!target.startsWith(root)) {
+            throw new IOException("Tar entry " + name + " points outside of " + root);
+        }
+        return target;
+    }
+
+    private static void writeHeader(OutputStream outputStream, String name, byte type, long size, FileTime lastModified, int mode) throws IOException {
+        byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+        if (nameBytes.length > NAME_LENGTH) {
+            writeHeader(outputStream, "././@LongLink", TYPE_GNU_LONG_NAME, nameBytes.length + 1, FileTime.fromMillis(0), 0);
+            outputStream.write(nameBytes);
+            outputStream.write(0);
+            writePadding(outputStream, nameBytes.length + 1);
+        }
+        byte[] header = new byte[BLOCK_SIZE];
+        System.arraycopy(nameBytes, 0, header, 0, Math.min(NAME_LENGTH, nameBytes.length));
+        putNumber(header, 100, 8, mode);
+        putNumber(header, 108, 8, 0);
+        putNumber(header, 116, 8, 0);
+        putNumber(header, 124, 12, size);
+        putNumber(header, 136, 12, lastModified.to(TimeUnit.SECONDS));
+        header[156] = type;
+        byte[] magic = "ustar  \0".getBytes(StandardCharsets.US_ASCII);
+        System.arraycopy(magic, 0, header, 257, magic.length);
+        for (int i = 148; i < 156; i++) {
+            header[i] = ' ';
+        }
+        String checksum = String.format("%06o", checksum(header));
+        System.arraycopy(checksum.getBytes(StandardCharsets.US_ASCII), 0, header, 148, 6);
+        header[154] = 0;
+        outputStream.write(header);
+    }
+
+    private static void putNumber(byte[] header, int offset, int length, long value) {
+        String octal = Long.toOctalString(value);
+        if (octal.length() < length) {
+            byte[] digits = String.format("%" + (length - 1) + "s", octal).replace(' ', '0').getBytes(StandardCharsets.US_ASCII);
+            System.arraycopy(digits, 0, header, offset, digits.length);
+        } else {
+            // GNU base-256 encoding for values that do not fit into the octal field
+            header[offset] = (byte) 0x80;
+            for (int i = offset + length - 1; i > offset; i--) {
+                header[i] = (byte) value;
+                value >>>= 8;
+            }
+        }
+    }
+
+    private static long parseNumber(byte[] header, int offset, int length) throws IOException {
+        if ((header[offset] & 0x80) != 0) {
+            long value = header[offset] & 0x7f;
+            for (int i = offset + 1; i < offset + length; i++) {
+                value = (value << 8) | (header[i] & 0xff);
+            }
+            return value;
+        }
+        String octal = trimNul(new String(header, offset, length, StandardCharsets.US_ASCII)).trim();
+        if (octal.isEmpty()) {
+            return 0;
+        }
+        try {
+            return Long.parseLong(octal, 8);
+        } catch (NumberFormatException ex) {
+            throw new IOException("Malformed tar header field: " + octal, ex);
+        }
+    }
+
+    private static String parseName(byte[] header) {
+        String name = trimNul(new String(header, 0, NAME_LENGTH, StandardCharsets.UTF_8));
+        boolean posixUstar = "ustar\0".equals(new String(header, 257, 6, StandardCharsets.US_ASCII));
+        if (posixUstar && header[345] != 0) {
+            name = trimNul(new String(header, 345, 155, StandardCharsets.UTF_8)) + "/" + name;
+        }
+        return name;
+    }
+
+    private static String parsePaxRecord(String records, String key) {
+        String value = null;
+        int position = 0;
+        while (position < records.length()) {
+            int space = records.indexOf(' ', position);
+            int end = records.indexOf('\n', space);
+            if (space < 0 || end < 0) {
+                break;
+            }
+            String record = records.substring(space + 1, end);
+            if (record.startsWith(key + "=")) {
+                value = record.substring(key.length() + 1);
+            }
+            position = end + 1;
+        }
+        return value;
+    }
+
+    private static boolean readHeader(InputStream inputStream, byte[] header) throws IOException {
+        int read = 0;
+        while (read < BLOCK_SIZE) {
+            int count = inputStream.read(header, read, BLOCK_SIZE - read);
+            if (count == -1) {
+                if (read == 0) {
+                    return false;
+                }
+                throw new EOFException("Truncated tar header");
+            }
+            read += count;
+        }
+        boolean endOfArchive = true;
+        for (byte b : header) {
+            if (b != 0) {
+                endOfArchive = false;
+                break;
+            }
+        }
+        if (endOfArchive) {
+            return false;
+        }
+        long storedChecksum = parseNumber(header, 148, 8);
+        byte[] checksumHeader = header.clone();
+        for (int i = 148; i < 156; i++) {
+            checksumHeader[i] = ' ';
+        }
+        if (storedChecksum != checksum(checksumHeader)) {
+            throw new IOException("Corrupt tar header, checksum does not match");
+        }
+        return true;
+    }
+
+    private static byte[] readData(InputStream inputStream, long size) throws IOException {
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException("Tar extension header too large: " + size);
+        }
+        ByteArrayOutputStream data = new ByteArrayOutputStream((int) size);
+        copy(inputStream, data, size);
+        skip(inputStream, padded(size) - size);
+        return data.toByteArray();
+    }
+
+    private static void copy(InputStream inputStream, OutputStream outputStream, long size) throws IOException {
+        byte[] buffer = new byte[BUFFER_SIZE];
+        long remaining = size;
+        while (remaining > 0) {
+            int count = inputStream.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+            if (count == -1) {
+                throw new EOFException("Truncated tar entry");
+            }
+            outputStream.write(buffer, 0, count);
+            remaining -= count;
+        }
+    }
+
+    private static void skip(InputStream inputStream, long size) throws IOException {
+        long remaining = size;
+        while (remaining > 0) {
+            long skipped = inputStream.skip(remaining);
+            if (skipped <= 0) {
+                if (inputStream.read() == -1) {
+                    throw new EOFException("Truncated tar entry");
+                }
+                skipped = 1;
+            }
+            remaining -= skipped;
+        }
+    }
+
+    private static void writePadding(OutputStream outputStream, long size) throws IOException {
+        outputStream.write(new byte[(int) (padded(size) - size)]);
+    }
+
+    private static long padded(long size) {
+        return (size + BLOCK_SIZE - 1) / BLOCK_SIZE * BLOCK_SIZE;
+    }
+
+    private static long checksum(byte[] header) {
+        long sum = 0;
+        for (byte b : header) {
+            sum += b & 0xff;
+        }
+        return sum;
+    }
+
+    private static String trimNul(String value) {
+        int nul = value.indexOf('\0');
+        return nul < 0 ? value : value.substring(0, nul);
+    }
+
+    private static int mode(Path path, int defaultMode) throws IOException {
+        Set<PosixFilePermission> permissions;
+        try {
+            permissions = Files.getPosixFilePermissions(path);
+        } catch (UnsupportedOperationException ex) {
+            return defaultMode;
+        }
+        int mode = 0;
+        for (int i = 0; i < PERMISSIONS.length; i++) {
+            if (permissions.contains(PERMISSIONS[i])) {
+                mode |= 0400 >> i;
+            }
+        }
+        return mode;
+    }
+
+    private static void setMode(Path path, int mode) throws IOException {
+        Set<PosixFilePermission> permissions = EnumSet.noneOf(PosixFilePermission.class);
+        for (int i = 0; i < PERMISSIONS.length; i++) {
+            if ((mode & (0400 >> i)) != 0) {
+                permissions.add(PERMISSIONS[i]);
+            }
+        }
+        try {
+            Files.setPosixFilePermissions(path, permissions);
+        } catch (UnsupportedOperationException ex) {
+            // file system without POSIX permissions, e.g. Windows
+        }
+    }
+}
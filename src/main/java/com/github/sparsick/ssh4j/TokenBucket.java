@@ -0,0 +1,77 @@
+package com.github.sparsick.ssh4j;
+
+import java.io.InterruptedIOException;
+import java.util.List;
+
+/**
+ * Byte rate limiter that allows one second of burst. Transfers acquire tokens chunk by chunk while the bytes are
+ * streamed, so the limit holds on the wire and not just on average per transfer. Interactive callers take precedence:
+ * they may overdraw the bucket by one chunk and other callers wait as long as an interactive caller is waiting, while
+ * other callers never overdraw it and therefore cannot leave a debt that delays an interactive transfer.
+ */
+class TokenBucket {
+
+    private final long bytesPerSecond;
+    private double tokens;
+    private long lastRefillNanos;
+    private int waitingInteractive;
+
+    TokenBucket(long bytesPerSecond) {
+        this.bytesPerSecond = bytesPerSecond;
+        this.tokens = bytesPerSecond;
+        this.lastRefillNanos = System.nanoTime();
+    }
+
+    /**
+     * Largest chunk the given buckets can cover in one go. Callers that stay below it never overdraw a bucket.
+     */
+    static int maxChunkSize(List<TokenBucket> buckets, int preferredChunkSize) {
+        long chunkSize = preferredChunkSize;
+        for (TokenBucket bucket : buckets) {
+            chunkSize = Math.min(chunkSize, bucket.bytesPerSecond);
+        }
+        return (int) Math.max(1, chunkSize);
+    }
+
+    static void acquire(List<TokenBucket> buckets, long bytes, boolean interactive) throws InterruptedIOException {
+        try {
+            for (TokenBucket bucket : buckets) {
+                bucket.acquire(bytes, interactive);
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for the rate limit");
+        }
+    }
+
+    synchronized void acquire(long bytes, boolean interactive) throws InterruptedException {
+        // the rate limited streams stay within maxChunkSize, a larger chunk could never be covered and needs a full bucket
+        double needed = interactive ? 0 : Math.min(bytes, bytesPerSecond);
+        if (interactive) {
+            waitingInteractive++;
+        }
+        try {
+            while (true) {
+                refill();
+                boolean turn = interactive || waitingInteractive == 0;
+                if (turn && tokens >= needed) {
+                    tokens -= bytes;
+                    return;
+                }
+                // a caller that is only waiting for its turn is woken up by notifyAll
+                wait(turn ? (long) Math.ceil((needed - tokens) * 1000 / bytesPerSecond) + 1 : 0);
+            }
+        } finally {
+            if (interactive) {
+                waitingInteractive--;
+                notifyAll();
+            }
+        }
+    }
+
+    private void refill() {
+        long now = System.nanoTime();
+        tokens = Math.min(bytesPerSecond, tokens + (now - lastRefillNanos) * bytesPerSecond / 1e9);
+        lastRefillNanos = now;
+    }
+}
@@ -0,0 +1,18 @@
+package com.github.sparsick.ssh4j;
+
+public enum TransferPriority {
+
+    INTERACTIVE(16),
+    NORMAL(4),
+    BULK(1);
+
+    private final int weight;
+
+    TransferPriority(int weight) {
+        this.weight = weight;
+    }
+
+    public int getWeight() {
+        return weight;
+    }
+}
@@ -0,0 +1,315 @@
+package com.github.sparsick.ssh4j;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Future;
+
+/**
+ * Runs uploads and downloads of registered {@link SshClient}s on a fixed number of worker threads.
+ * <p>
+ * Transfers are grouped into jobs. Jobs share the workers by weighted fair queueing, the weight is given by the
+ * {@link TransferPriority}, the cost of a transfer by its size. The last {@code reservedInteractiveWorkers} workers
+ * only take interactive transfers, so bulk jobs can never occupy all of them. Global and per host byte rates are
+ * enforced with token buckets while the bytes are streamed, interactive transfers take precedence at the buckets.
+ */
+public class TransferScheduler implements AutoCloseable {
+
+    private final Map<String, SshClient> clients = new HashMap<>();
+    private final Map<String, TokenBucket> hostRateLimits = new HashMap<>();
+    private final Map<String, Job> jobs = new LinkedHashMap<>();
+    private final Map<TransferPriority, Integer> queueDepths = new EnumMap<>(TransferPriority.class);
+    private final Map<TransferPriority, Long> startedTransfers = new EnumMap<>(TransferPriority.class);
+    private final Map<TransferPriority, Long> completedTransfers = new EnumMap<>(TransferPriority.class);
+    private final Map<TransferPriority, Long> queueWaitMillis = new EnumMap<>(TransferPriority.class);
+    private final Thread[] workers;
+    private final long startNanos = System.nanoTime();
+    private TokenBucket globalRateLimit;
+    private int reservedInteractiveWorkers;
+    private int activeTransfers;
+    private long transferredBytes;
+    private double virtualTime;
+    private boolean closed;
+
+    public TransferScheduler(int workerCount) {
+        if (workerCount < 1) {
+            throw new IllegalArgumentException("At least one worker is needed.");
+        }
+        for (TransferPriority priority : TransferPriority.values()) {
+            queueDepths.put(priority, 0);
+            startedTransfers.put(priority, 0L);
+            completedTransfers.put(priority, 0L);
+            queueWaitMillis.put(priority, 0L);
+        }
+        reservedInteractiveWorkers = workerCount > 1 ? 1 : 0;
+        workers = new Thread[workerCount];
+        for (int i = 0; i < workerCount; i++) {
+            workers[i] = new Thread(this::work, "transfer-scheduler-" + i);
+            workers[i].setDaemon(true);
+            workers[i].start();
+        }
+    }
+
+    public synchronized void addHost(String host, SshClient client) {
+        clients.put(host, client);
+    }
+
+    public synchronized void setGlobalRateLimit(long bytesPerSecond) {
+        globalRateLimit = bytesPerSecond > 0 ? new TokenBucket(bytesPerSecond) : null;
+    }
+
+    public synchronized void setHostRateLimit(String host, long bytesPerSecond) {
+        if (bytesPerSecond > 0) {
+            hostRateLimits.put(host, new TokenBucket(bytesPerSecond));
+        } else {
+            hostRateLimits.remove(host);
+        }
+    }
+
+    public synchronized void setReservedInteractiveWorkers(int reservedInteractiveWorkers) {
+        if (reservedInteractiveWorkers < 0 || reservedInteractiveWorkers >= workers.length) {
+            throw new IllegalArgumentException("Reserved workers must be less than the worker count.");
+        }
+        this.reservedInteractiveWorkers = reservedInteractiveWorkers;
+        notifyAll();
+    }
+
+    public Future<Void> upload(String host, String job, TransferPriority priority, Path local, String remotePath) throws IOException {
+        long size = Files.size(local);
+        return submit(host, job, priority, size, (client, buckets, interactive) -> {
+            // without a rate limit the client's own transfer is used, it is usually faster than the byte stream
+            if (buckets.isEmpty()) {
+                client.upload(local, remotePath);
+            } else {
+                client.write(remotePath, new InputStreamPublisher(() -> new RateLimitedInputStream(Files.newInputStream(local), buckets, interactive)));
+            }
+            return size;
+        });
+    }
+
+    public Future<Void> download(String host, String job, TransferPriority priority, String remotePath, Path local) {
+        // the size is only known afterwards, the job is charged for it when the transfer has finished
+        return submit(host, job, priority, 0, (client, buckets, interactive) -> {
+            if (buckets.isEmpty()) {
+                client.download(remotePath, local);
+            } else {
+                // an existing file is never overwritten, like the download of the clients, and a partial one is removed
+                try (OutputStream outputStream = new RateLimitedOutputStream(Files.newOutputStream(local, StandardOpenOption.CREATE_NEW), buckets, interactive)) {
+                    OutputStreamSubscriber.writeTo(client.read(remotePath), outputStream);
+                } catch (IOException | RuntimeException ex) {
+                    if (!(ex instanceof FileAlreadyExistsException)) {
+                        Files.deleteIfExists(local);
+                    }
+                    throw ex;
+                }
+            }
+            return Files.size(local);
+        });
+    }
+
+    private synchronized Future<Void> submit(String host, String jobName, TransferPriority priority, long expectedBytes, TransferOperation operation) {
+        if (closed) {
+            throw new IllegalStateException("Transfer scheduler is closed.");
+        }
+        SshClient client = clients.get(host);
+        if (client == null) {
+            throw new IllegalArgumentException("Unknown host " + host + ". Please call addHost first.");
+        }
+        String jobKey = jobName + "/" + priority;
+        Job job = jobs.get(jobKey);
+        if (job == null) {
+            job = new Job(priority.getWeight());
+            job.pass = virtualTime;
+            jobs.put(jobKey, job);
+        }
+        Transfer transfer = new Transfer(host, client, job, priority, expectedBytes, operation);
+        job.queue.add(transfer);
+        queueDepths.put(priority, queueDepths.get(priority) + 1);
+        notifyAll();
+        return transfer.result;
+    }
+
+    private void work() {
+        try {
+            while (true) {
+                Transfer transfer = take();
+                if (transfer == null) {
+                    return;
+                }
+                long bytes = 0;
+                try {
+                    bytes = transfer.operation.transfer(transfer.client, transfer.buckets, transfer.priority == TransferPriority.INTERACTIVE);
+                    transfer.result.complete(null);
+                } catch (IOException | RuntimeException ex) {
+                    transfer.result.completeExceptionally(ex);
+                } finally {
+                    finish(transfer, bytes);
+                }
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private synchronized Transfer take() throws InterruptedException {
+        while (true) {
+            Transfer transfer = pollEligible();
+            if (transfer != null) {
+                return transfer;
+            }
+            if (closed && jobs.isEmpty()) {
+                return null;
+            }
+            wait();
+        }
+    }
+
+    private Transfer pollEligible() {
+        boolean onlyInteractive = activeTransfers >= workers.length - reservedInteractiveWorkers;
+        Job chosen = null;
+        for (Job job : jobs.values()) {
+            Transfer head = job.queue.peek();
+            if (head == null || onlyInteractive && head.priority != TransferPriority.INTERACTIVE) {
+                continue;
+            }
+            if (chosen == null || job.pass < chosen.pass) {
+                chosen = job;
+            }
+        }
+        if (chosen == null) {
+            return null;
+        }
+        Transfer transfer = chosen.queue.poll();
+        virtualTime = Math.max(virtualTime, chosen.pass);
+        chosen.pass += (double) Math.max(1, transfer.expectedBytes) / chosen.weight;
+        chosen.activeTransfers++;
+        transfer.buckets = rateLimitsFor(transfer.host);
+        queueDepths.put(transfer.priority, queueDepths.get(transfer.priority) - 1);
+        startedTransfers.put(transfer.priority, startedTransfers.get(transfer.priority) + 1);
+        queueWaitMillis.put(transfer.priority, queueWaitMillis.get(transfer.priority) + (System.nanoTime() - transfer.enqueuedNanos) / 1000000);
+        activeTransfers++;
+        return transfer;
+    }
+
+    private List<TokenBucket> rateLimitsFor(String host) {
+        List<TokenBucket> buckets = new ArrayList<>();
+        TokenBucket hostRateLimit = hostRateLimits.get(host);
+        if (hostRateLimit != null) {
+            buckets.add(hostRateLimit);
+        }
+        if (globalRateLimit != null) {
+            buckets.add(globalRateLimit);
+        }
+        return buckets;
+    }
+
+    // a job stays registered while transfers of it are running, so that their actual size is still charged to it
+    private void removeIdleJobs() {
+        Iterator<Job> iterator = jobs.values().iterator();
+        while (iterator.hasNext()) {
+            Job job = iterator.next();
+            if (job.queue.isEmpty() && job.activeTransfers == 0) {
+                iterator.remove();
+            }
+        }
+    }
+
+    private synchronized void finish(Transfer transfer, long bytes) {
+        activeTransfers--;
+        transfer.job.activeTransfers--;
+        transfer.job.pass += (double) Math.max(0, bytes - Math.max(1, transfer.expectedBytes)) / transfer.job.weight;
+        removeIdleJobs();
+        transferredBytes += bytes;
+        completedTransfers.put(transfer.priority, completedTransfers.get(transfer.priority) + 1);
+        notifyAll();
+    }
+
+    public synchronized int getQueueDepth(TransferPriority priority) {
+        return queueDepths.get(priority);
+    }
+
+    public synchronized int getActiveTransfers() {
+        return activeTransfers;
+    }
+
+    public synchronized long getCompletedTransfers(TransferPriority priority) {
+        return completedTransfers.get(priority);
+    }
+
+    public synchronized long getAverageQueueWaitMillis(TransferPriority priority) {
+        long started = startedTransfers.get(priority);
+        return started == 0 ? 0 : queueWaitMillis.get(priority) / started;
+    }
+
+    public synchronized long getTransferredBytes() {
+        return transferredBytes;
+    }
+
+    public synchronized double getThroughputBytesPerSecond() {
+        double seconds = (System.nanoTime() - startNanos) / 1e9;
+        return seconds == 0 ? 0 : transferredBytes / seconds;
+    }
+
+    @Override
+    public void close() throws InterruptedException {
+        synchronized (this) {
+            closed = true;
+            notifyAll();
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+    }
+
+    @FunctionalInterface
+    private interface TransferOperation {
+
+        long transfer(SshClient client, List<TokenBucket> buckets, boolean interactive) throws IOException;
+    }
+
+    private static class Transfer {
+
+        private final String host;
+        private final SshClient client;
+        private final Job job;
+        private final TransferPriority priority;
+        private final long expectedBytes;
+        private final TransferOperation operation;
+        private final long enqueuedNanos = System.nanoTime();
+        private final CompletableFuture<Void> result = new CompletableFuture<>();
+        private List<TokenBucket> buckets;
+
+        Transfer(String host, SshClient client, Job job, TransferPriority priority, long expectedBytes, TransferOperation operation) {
+            this.host = host;
+            this.client = client;
+            this.job = job;
+            this.priority = priority;
+            this.expectedBytes = expectedBytes;
+            this.operation = operation;
+        }
+    }
+
+    private static class Job {
+
+        private final int weight;
+        private final ArrayDeque<Transfer> queue = new ArrayDeque<>();
+        private double pass;
+        private int activeTransfers;
+
+        Job(int weight) {
+            this.weight = weight;
+        }
+    }
+}
@@ -1,11 +1,21 @@
 package com.github.sparsick.ssh4j;
 
+import com.jcraft.jsch.JSchException;
+import java.io.EOFException;
 import java.io.File;
+import java.io.FilterInputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.net.SocketException;
+import java.nio.ByteBuffer;
 import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Flow;
 import org.apache.commons.vfs2.AllFileSelector;
+import org.apache.commons.vfs2.FileContent;
 import org.apache.commons.vfs2.FileObject;
 import org.apache.commons.vfs2.FileSystemException;
 import org.apache.commons.vfs2.FileSystemOptions;
@@ -20,6 +30,9 @@ public class VfsSftpClient implements SshClient {
     private String user;
     private Path privateKey;
     private Path knownHosts;
+    private int keepAliveInterval;
+    private int keepAliveMaxMissedReplies;
+    private volatile boolean connectionLost;
     private StandardFileSystemManager fileSystemManager;
     private FileObject remoteRootDirectory;
 
@@ -40,12 +53,19 @@ public class VfsSftpClient implements SshClient {
         this.knownHosts = knownHosts;
     }
 
+    @Override
+    public void setKeepAlive(int intervalSeconds, int maxMissedReplies) {
+        this.keepAliveInterval = intervalSeconds;
+        this.keepAliveMaxMissedReplies = maxMissedReplies;
+    }
+
     @Override
     public void connect(String host) throws IOException {
         initFileSystemManager();
         FileSystemOptions connectionOptions = buildConnectionOptions();
         String connectionUrl = buildConnectionUrl(host);
         remoteRootDirectory = fileSystemManager.resolveFile(connectionUrl, connectionOptions);
+        connectionLost = false;
     }
 
     private void initFileSystemManager() throws FileSystemException {
@@ -65,6 +85,10 @@ public class VfsSftpClient implements SshClient {
         } else {
             sftpConfigBuilder.setKnownHosts(opts, new File("~/.ssh/known_hosts"));
         }
+        if (keepAliveInterval > 0) {
+            // commons-vfs offers no keepalive option, so a socket timeout is the closest dead connection detection
+            sftpConfigBuilder.setTimeout(opts, keepAliveInterval * Math.max(1, keepAliveMaxMissedReplies) * 1000);
+        }
         if (privateKey != null) {
             sftpConfigBuilder.setIdentities(opts, new File[]{privateKey.toFile()});
         }
@@ -86,7 +110,25 @@ public class VfsSftpClient implements SshClient {
         if (fileSystemManager != null) {
             fileSystemManager.close();
             fileSystemManager = null;
+            remoteRootDirectory = null;
+        }
+    }
+
+    @Override
+    public boolean isConnected() {
+        return remoteRootDirectory != null && !connectionLost;
+    }
+
+    // a remote stat per liveness check would cost a round trip per operation, so a dead session is recognised by the
+    // failure of the operation itself
+    private FileSystemException trackConnectionFailure(FileSystemException ex) {
+        for (Throwable cause = ex; cause != null; cause = cause.getCause()) {
+            if (cause instanceof JSchException || cause instanceof SocketException || cause instanceof EOFException) {
+                connectionLost = true;
+                break;
+            }
         }
+        return ex;
     }
 
     @Override
@@ -95,6 +137,8 @@ public class VfsSftpClient implements SshClient {
         FileObject remoteFileObject = remoteRootDirectory.resolveFile(remotePath);
         try {
             localFileObject.copyFrom(remoteFileObject, new AllFileSelector());
+        } catch (FileSystemException ex) {
+            throw trackConnectionFailure(ex);
         } finally {
             localFileObject.close();
             remoteFileObject.close();
@@ -108,12 +152,69 @@ public class VfsSftpClient implements SshClient {
         FileObject remoteFileObject = remoteRootDirectory.resolveFile(remotePath);
         try {
             remoteFileObject.copyFrom(localFileObject, new AllFileSelector());
+        } catch (FileSystemException ex) {
+            throw trackConnectionFailure(ex);
         } finally {
             localFileObject.close();
             remoteFileObject.close();
         }
     }
 
+    @Override
+    public void download(String remotePath, Path local, ChecksumAlgorithm checksumAlgorithm) throws IOException {
+        throw new UnsupportedOperationException("commons-vfs offers neither an exec channel for a remote checksum command nor the SFTP check-file extension.");
+    }
+
+    @Override
+    public void upload(Path local, String remotePath, ChecksumAlgorithm checksumAlgorithm) throws IOException {
+        throw new UnsupportedOperationException("commons-vfs offers neither an exec channel for a remote checksum command nor the SFTP check-file extension.");
+    }
+
+    @Override
+    public Flow.Publisher<ByteBuffer> read(String remotePath) {
+        return new InputStreamPublisher(() -> {
+            FileObject remoteFileObject = remoteRootDirectory.resolveFile(remotePath);
+            try {
+                return new FilterInputStream(remoteFileObject.getContent().getInputStream()) {
+                    @Override
+                    public void close() throws IOException {
+                        try {
+                            super.close();
+                        } finally {
+                            remoteFileObject.close();
+                        }
+                    }
+                };
+            } catch (FileSystemException ex) {
+                remoteFileObject.close();
+                throw ex;
+            }
+        });
+    }
+
+    @Override
+    public void write(String remotePath, Flow.Publisher<ByteBuffer> content) throws IOException {
+        FileObject remoteFileObject = remoteRootDirectory.resolveFile(remotePath);
+        try (OutputStream outputStream = remoteFileObject.getContent().getOutputStream()) {
+            OutputStreamSubscriber.writeTo(content, outputStream);
+        } catch (FileSystemException ex) {
+            throw trackConnectionFailure(ex);
+        } finally {
+            remoteFileObject.close();
+        }
+    }
+
+    @Override
+    public void uploadDirectory(Path localDirectory, String remoteDirectory, boolean compress) throws IOException {
+        // commons-vfs has no exec channel for a remote tar, so the tree is copied file by file via SFTP
+        upload(localDirectory, remoteDirectory);
+    }
+
+    @Override
+    public void downloadDirectory(String remoteDirectory, Path localDirectory, boolean compress) throws IOException {
+        download(remoteDirectory, localDirectory);
+    }
+
     @Override
     public void move(String oldRemotePath, String newRemotePath) throws IOException {
         FileObject remoteOldFileObject = remoteRootDirectory.resolveFile(oldRemotePath);
@@ -121,6 +222,8 @@ public class VfsSftpClient implements SshClient {
         try {
             remoteOldFileObject.moveTo(newRemoteFileObject);
             remoteOldFileObject.close();
+        } catch (FileSystemException ex) {
+            throw trackConnectionFailure(ex);
         } finally {
             newRemoteFileObject.close();
         }
@@ -132,6 +235,8 @@ public class VfsSftpClient implements SshClient {
         FileObject oldRemoteFileObject = remoteRootDirectory.resolveFile(oldRemotePath);
         try {
             newRemoteFileObject.copyFrom(oldRemoteFileObject, new AllFileSelector());
+        } catch (FileSystemException ex) {
+            throw trackConnectionFailure(ex);
         } finally {
             oldRemoteFileObject.close();
             newRemoteFileObject.close();
@@ -143,6 +248,8 @@ public class VfsSftpClient implements SshClient {
         FileObject remoteFileObject = remoteRootDirectory.resolveFile(remotePath);
         try {
             remoteFileObject.delete();
+        } catch (FileSystemException ex) {
+            throw trackConnectionFailure(ex);
         } finally {
             remoteFileObject.close();
         }
@@ -153,6 +260,8 @@ public class VfsSftpClient implements SshClient {
         FileObject remoteFileObject = remoteRootDirectory.resolveFile(remotePath);
         try {
             return remoteFileObject.exists();
+        } catch (FileSystemException ex) {
+            throw trackConnectionFailure(ex);
         } finally {
             remoteFileObject.close();
         }
@@ -184,6 +293,8 @@ public class VfsSftpClient implements SshClient {
                 }
             }
             return childrenNames;
+        } catch (FileSystemException ex) {
+            throw trackConnectionFailure(ex);
         } finally {
             remoteFileObject.close();
         }
@@ -194,6 +305,41 @@ public class VfsSftpClient implements SshClient {
         throw new UnsupportedOperationException("Not supported yet.");
     }
 
+    @Override
+    public RemoteDirectoryWatcher watch(String remoteDirectory, RemoteChangeListener listener) throws IOException {
+        // commons-vfs has no exec channel for inotifywait, so changes are detected by polling
+        return new PollingDirectoryWatcher(remoteDirectory, new PollingDirectoryWatcher.DirectoryLister() {
+            @Override
+            public long lastModified(String remoteDirectory) throws IOException {
+                FileObject remoteFileObject = remoteRootDirectory.resolveFile(remoteDirectory);
+                try {
+                    remoteFileObject.refresh();
+                    return remoteFileObject.getContent().getLastModifiedTime();
+                } finally {
+                    remoteFileObject.close();
+                }
+            }
+
+            @Override
+            public Map<String, PollingDirectoryWatcher.FileState> listFiles(String remoteDirectory) throws IOException {
+                FileObject remoteFileObject = remoteRootDirectory.resolveFile(remoteDirectory);
+                try {
+                    remoteFileObject.refresh();
+                    Map<String, PollingDirectoryWatcher.FileState> fileStates = new HashMap<>();
+                    for (FileObject child : remoteFileObject.getChildren()) {
+                        if (child.getType() == FileType.FILE) {
+                            FileContent content = child.getContent();
+                            fileStates.put(child.getName().getBaseName(), new PollingDirectoryWatcher.FileState(content.getLastModifiedTime(), content.getSize()));
+                        }
+                    }
+                    return fileStates;
+                } finally {
+                    remoteFileObject.close();
+                }
+            }
+        }, listener);
+    }
+
     @Override
     public void close() throws Exception {
         disconnect();
@@ -0,0 +1,141 @@
+package com.github.sparsick.ssh4j;
+
+import java.security.MessageDigest;
+
+/**
+ * Streaming XXH64 with seed 0, the algorithm of {@code xxhsum -H1}. The digest is the hash in canonical (big endian)
+ * byte order, so its hex form matches the output of xxhsum.
+ */
+class Xxh64Digest extends MessageDigest {
+
+    private static final long PRIME1 = 0x9E3779B185EBCA87L;
+    private static final long PRIME2 = 0xC2B2AE3D27D4EB4FL;
+    private static final long PRIME3 = 0x165667B19E3779F9L;
+    private static final long PRIME4 = 0x85EBCA77C2B2AE63L;
+    private static final long PRIME5 = 0x27D4EB2F165667C5L;
+    private static final int STRIPE_SIZE = 32;
+
+    private final byte[] buffer = new byte[STRIPE_SIZE];
+    private int bufferSize;
+    private long totalLength;
+    private long v1;
+    private long v2;
+    private long v3;
+    private long v4;
+
+    Xxh64Digest() {
+        super("XXH64");
+        engineReset();
+    }
+
+    @Override
+    protected void engineUpdate(byte input) {
+        engineUpdate(new byte[]{input}, 0, 1);
+    }
+
+    @Override
+    protected void engineUpdate(byte[] input, int offset, int length) {
+        totalLength += length;
+        if (bufferSize > 0) {
+            int fill = Math.min(length, STRIPE_SIZE - bufferSize);
+            System.arraycopy(input, offset, buffer, bufferSize, fill);
+            bufferSize += fill;
+            offset += fill;
+            length -= fill;
+            if (bufferSize < STRIPE_SIZE) {
+                return;
+            }
+            processStripe(buffer, 0);
+            bufferSize = 0;
+        }
+        while (length >= STRIPE_SIZE) {
+            processStripe(input, offset);
+            offset += STRIPE_SIZE;
+            length -= STRIPE_SIZE;
+        }
+        System.arraycopy(input, offset, buffer, 0, length);
+        bufferSize = length;
+    }
+
+    private void processStripe(byte[] input, int offset) {
+        v1 = round(v1, readLong(input, offset));
+        v2 = round(v2, readLong(input, offset + 8));
+        v3 = round(v3, readLong(input, offset + 16));
+        v4 = round(v4, readLong(input, offset + 24));
+    }
+
+    @Override
+    protected byte[] engineDigest() {
+        long hash;
+        if (totalLength >= STRIPE_SIZE) {
+            hash = Long.rotateLeft(v1, 1) + Long.rotateLeft(v2, 7) + Long.rotateLeft(v3, 12) + Long.rotateLeft(v4, 18);
+            hash = mergeRound(hash, v1);
+            hash = mergeRound(hash, v2);
+            hash = mergeRound(hash, v3);
+            hash = mergeRound(hash, v4);
+        } else {
+            hash = PRIME5;
+        }
+        hash += totalLength;
+        int offset = 0;
+        for (; offset + 8 <= bufferSize; offset += 8) {
+            hash ^= round(0, readLong(buffer, offset));
+            hash = Long.rotateLeft(hash, 27) * PRIME1 + PRIME4;
+        }
+        if (offset + 4 <= bufferSize) {
+            hash ^= (readInt(buffer, offset) & 0xFFFFFFFFL) * PRIME1;
+            hash = Long.rotateLeft(hash, 23) * PRIME2 + PRIME3;
+            offset += 4;
+        }
+        for (; offset < bufferSize; offset++) {
+            hash ^= (buffer[offset] & 0xFFL) * PRIME5;
+            hash = Long.rotateLeft(hash, 11) * PRIME1;
+        }
+        hash ^= hash >>> 33;
+        hash *= PRIME2;
+        hash ^= hash >>> 29;
+        hash *= PRIME3;
+        hash ^= hash >>> 32;
+        engineReset();
+        byte[] digest = new byte[8];
+        for (int i = 7; i >= 0; i--) {
+            digest[i] = (byte) hash;
+            hash >>>= 8;
+        }
+        return digest;
+    }
+
+    @Override
+    protected int engineGetDigestLength() {
+        return 8;
+    }
+
+    @Override
+    protected void engineReset() {
+        v1 = PRIME1 + PRIME2;
+        v2 = PRIME2;
+        v3 = 0;
+        v4 = -PRIME1;
+        bufferSize = 0;
+        totalLength = 0;
+    }
+
+    private static long round(long accumulator, long input) {
+        accumulator += input * PRIME2;
+        accumulator = Long.rotateLeft(accumulator, 31);
+        return accumulator * PRIME1;
+    }
+
+    private static long mergeRound(long accumulator, long value) {
+        accumulator ^= round(0, value);
+        return accumulator * PRIME1 + PRIME4;
+    }
+
+    private static long readLong(byte[] input, int offset) {
+        return (readInt(input, offset) & 0xFFFFFFFFL) | (long) readInt(input, offset + 4) << 32;
+    }
+
+    private static int readInt(byte[] input, int offset) {
+        return (input[offset] & 0xFF) | (input[offset + 1] & 0xFF) << 8 | (input[offset + 2] & 0xFF) << 16 | (input[offset + 3] & 0xFF) << 24;
+    }
+}
@@ -0,0 +1,55 @@
+package com.github.sparsick.ssh4j;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.Random;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ChecksumAlgorithmTest {
+
+    @Test
+    public void xxh64MatchesReferenceVectors() {
+        assertThat(xxh64("")).isEqualTo("ef46db3751d8e999");
+        assertThat(xxh64("abc")).isEqualTo("44bc2cf5ad770999");
+        assertThat(xxh64("xxhash")).isEqualTo("32dd38952c4bc720");
+        assertThat(xxh64("Nobody inspects the spammish repetition")).isEqualTo("fbcea83c8a378bf1");
+    }
+
+    @Test
+    public void xxh64IsIndependentOfChunking() {
+        byte[] content = new byte[100000];
+        new Random(42).nextBytes(content);
+        MessageDigest whole = ChecksumAlgorithm.XXH64.newDigest();
+        byte[] expected = whole.digest(content);
+
+        MessageDigest chunked = ChecksumAlgorithm.XXH64.newDigest();
+        Random chunkSizes = new Random(7);
+        int offset = 0;
+        while (offset < content.length) {
+            int length = Math.min(content.length - offset, chunkSizes.nextInt(70));
+            chunked.update(content, offset, length);
+            offset += length;
+        }
+        assertThat(chunked.digest()).isEqualTo(expected);
+        // digest() resets, so the instance can be reused
+        assertThat(chunked.digest(content)).isEqualTo(expected);
+    }
+
+    @Test
+    public void buildRemoteCommandQuotesPath() {
+        assertThat(ChecksumAlgorithm.SHA256.buildRemoteCommand("/home/it's.txt")).isEqualTo("sha256sum -- '/home/it'\\''s.txt'");
+        assertThat(ChecksumAlgorithm.XXH64.buildRemoteCommand("/home/test.txt")).isEqualTo("xxhsum -H1 < '/home/test.txt'");
+    }
+
+    @Test
+    public void parseRemoteCommandOutput() throws Exception {
+        assertThat(ChecksumAlgorithm.MD5.parseRemoteCommandOutput("\\D41D8CD98F00B204E9800998ECF8427E  /home/a\\nb\n")).isEqualTo("d41d8cd98f00b204e9800998ecf8427e");
+        assertThat(ChecksumAlgorithm.XXH64.parseRemoteCommandOutput("ef46db3751d8e999  stdin\n")).isEqualTo("ef46db3751d8e999");
+    }
+
+    private static String xxh64(String content) {
+        return ChecksumAlgorithm.toHex(ChecksumAlgorithm.XXH64.newDigest().digest(content.getBytes(StandardCharsets.UTF_8)));
+    }
+}
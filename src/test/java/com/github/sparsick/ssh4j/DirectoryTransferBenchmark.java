@@ -0,0 +1,72 @@
+package com.github.sparsick.ssh4j;
+
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Compares files per second of a tar streamed directory upload with uploading each file via SFTP. Runs against the
+ * same test VM as the integration tests, e.g. {@code java ... DirectoryTransferBenchmark jsch 10000}.
+ */
+public class DirectoryTransferBenchmark {
+
+    private static final String SSH_USER = "vagrant";
+    private static final String SSH_HOST = "192.168.33.10";
+    private static final String REMOTE_DIRECTORY = "/home/vagrant/benchmark";
+
+    public static void main(String[] args) throws Exception {
+        String clientName = args.length > 0 ? args[0] : "jsch";
+        int fileCount = args.length > 1 ? Integer.parseInt(args[1]) : 10000;
+        Path localDirectory = createSmallFiles(fileCount);
+
+        try (SshClient client = createClient(clientName)) {
+            client.authUserPassword(SSH_USER, "vagrant");
+            client.setKnownHosts(FileSystems.getDefault().getPath("src/test/resources/known_hosts"));
+            client.connect(SSH_HOST);
+
+            long start = System.nanoTime();
+            client.uploadDirectory(localDirectory, REMOTE_DIRECTORY, false);
+            report("tar stream", fileCount, start);
+
+            start = System.nanoTime();
+            client.uploadDirectory(localDirectory, REMOTE_DIRECTORY, true);
+            report("tar stream (gzip)", fileCount, start);
+
+            start = System.nanoTime();
+            for (int i = 0; i < fileCount; i++) {
+                client.upload(localDirectory.resolve(fileName(i)), REMOTE_DIRECTORY + "/" + fileName(i));
+            }
+            report("per-file SFTP", fileCount, start);
+        }
+    }
+
+    private static SshClient createClient(String clientName) {
+        switch (clientName) {
+            case "sshj":
+                return new SshJClient();
+            case "vfs":
+                return new VfsSftpClient();
+            default:
+                return new JSchClient();
+        }
+    }
+
+    private static Path createSmallFiles(int fileCount) throws IOException {
+        Path directory = Files.createTempDirectory("benchmark");
+        byte[] content = new byte[256];
+        for (int i = 0; i < fileCount; i++) {
+            Files.write(directory.resolve(fileName(i)), content);
+        }
+        return directory;
+    }
+
+    private static String fileName(int index) {
+        return "file" + index + ".bin";
+    }
+
+    private static void report(String mode, int fileCount, long startNanos) {
+        double seconds = (System.nanoTime() - startNanos) / 1e9;
+        System.out.printf("%-20s %8d files in %8.2f s = %10.1f files/s%n", mode, fileCount, seconds, fileCount / seconds);
+    }
+}
@@ -0,0 +1,259 @@
+package com.github.sparsick.ssh4j;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * In memory {@link SshClient} for tests that do not need the test VM. Remote files live in a map, connection loss can
+ * be simulated and every remote operation is recorded in call order. An operation gate holds all remote operations
+ * until it is opened.
+ */
+class FakeSshClient implements SshClient {
+
+    final Map<String, byte[]> remoteFiles = new ConcurrentHashMap<>();
+    final List<String> operations = Collections.synchronizedList(new ArrayList<>());
+    final AtomicInteger connectCount = new AtomicInteger();
+    final List<RemoteChangeListener> watchListeners = new CopyOnWriteArrayList<>();
+    final List<FakeWatcher> watchers = new CopyOnWriteArrayList<>();
+    final AtomicInteger closedWatchers = new AtomicInteger();
+    volatile CountDownLatch operationGate;
+    volatile CountDownLatch nextWatchReturnGate;
+    volatile CountDownLatch connectGate;
+    private volatile boolean connected;
+    private volatile boolean dropDuringNextCall;
+    private volatile IOException nextFailure;
+
+    void dropConnection() {
+        connected = false;
+    }
+
+    void dropConnectionDuringNextCall() {
+        dropDuringNextCall = true;
+    }
+
+    void failNextCall(IOException failure) {
+        nextFailure = failure;
+    }
+
+    private void remoteCall(String operation) throws IOException {
+        CountDownLatch gate = operationGate;
+        if (gate != null) {
+            try {
+                gate.await();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        if (dropDuringNextCall) {
+            dropDuringNextCall = false;
+            connected = false;
+        }
+        if (!connected) {
+            throw new IOException("session is down");
+        }
+        IOException failure = nextFailure;
+        if (failure != null) {
+            nextFailure = null;
+            throw failure;
+        }
+        operations.add(operation);
+    }
+
+    @Override
+    public void authUserPassword(String user, String password) {
+    }
+
+    @Override
+    public void authUserPublicKey(String user, Path privateKey) {
+    }
+
+    @Override
+    public void setKnownHosts(Path knownHosts) {
+    }
+
+    @Override
+    public void setKeepAlive(int intervalSeconds, int maxMissedReplies) {
+    }
+
+    @Override
+    public void connect(String host) throws IOException {
+        try {
+            CountDownLatch gate = connectGate;
+            if (gate != null) {
+                gate.await();
+            }
+            // widen the window in which concurrent callers could race each other
+            Thread.sleep(20);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        connectCount.incrementAndGet();
+        connected = true;
+    }
+
+    @Override
+    public void disconnect() {
+        connected = false;
+    }
+
+    @Override
+    public boolean isConnected() {
+        return connected;
+    }
+
+    @Override
+    public void download(String remotePath, Path local) throws IOException {
+        remoteCall("download " + remotePath);
+        Files.write(local, remoteFiles.get(remotePath));
+    }
+
+    @Override
+    public void upload(Path local, String remotePath) throws IOException {
+        remoteCall("upload " + remotePath);
+        remoteFiles.put(remotePath, Files.readAllBytes(local));
+    }
+
+    @Override
+    public void download(String remotePath, Path local, ChecksumAlgorithm checksumAlgorithm) throws IOException {
+        download(remotePath, local);
+    }
+
+    @Override
+    public void upload(Path local, String remotePath, ChecksumAlgorithm checksumAlgorithm) throws IOException {
+        upload(local, remotePath);
+    }
+
+    @Override
+    public Flow.Publisher<ByteBuffer> read(String remotePath) {
+        return new InputStreamPublisher(() -> {
+            remoteCall("read " + remotePath);
+            return new ByteArrayInputStream(remoteFiles.get(remotePath));
+        });
+    }
+
+    @Override
+    public void write(String remotePath, Flow.Publisher<ByteBuffer> content) throws IOException {
+        remoteCall("write " + remotePath);
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        OutputStreamSubscriber.writeTo(content, outputStream);
+        remoteFiles.put(remotePath, outputStream.toByteArray());
+    }
+
+    @Override
+    public void uploadDirectory(Path localDirectory, String remoteDirectory, boolean compress) throws IOException {
+        remoteCall("uploadDirectory " + remoteDirectory);
+    }
+
+    @Override
+    public void downloadDirectory(String remoteDirectory, Path localDirectory, boolean compress) throws IOException {
+        remoteCall("downloadDirectory " + remoteDirectory);
+    }
+
+    @Override
+    public void move(String oldRemotePath, String newRemotePath) throws IOException {
+        remoteCall("move " + oldRemotePath);
+        remoteFiles.put(newRemotePath, remoteFiles.remove(oldRemotePath));
+    }
+
+    @Override
+    public void copy(String oldRemotePath, String newRemotePath) throws IOException {
+        remoteCall("copy " + oldRemotePath);
+        remoteFiles.put(newRemotePath, remoteFiles.get(oldRemotePath));
+    }
+
+    @Override
+    public void delete(String remotePath) throws IOException {
+        remoteCall("delete " + remotePath);
+        remoteFiles.remove(remotePath);
+    }
+
+    @Override
+    public boolean fileExists(String remotePath) throws IOException {
+        remoteCall("fileExists " + remotePath);
+        return remoteFiles.containsKey(remotePath);
+    }
+
+    @Override
+    public List<String> listChildrenNames(String remotePath) throws IOException {
+        remoteCall("listChildrenNames " + remotePath);
+        return new ArrayList<>(remoteFiles.keySet());
+    }
+
+    @Override
+    public List<String> listChildrenFolderNames(String remotePath) throws IOException {
+        remoteCall("listChildrenFolderNames " + remotePath);
+        return new ArrayList<>();
+    }
+
+    @Override
+    public List<String> listChildrenFileNames(String remotePath) throws IOException {
+        remoteCall("listChildrenFileNames " + remotePath);
+        return new ArrayList<>(remoteFiles.keySet());
+    }
+
+    @Override
+    public void execute(String command) throws IOException {
+        remoteCall("execute " + command);
+    }
+
+    @Override
+    public RemoteDirectoryWatcher watch(String remoteDirectory, RemoteChangeListener listener) throws IOException {
+        remoteCall("watch " + remoteDirectory);
+        watchListeners.add(listener);
+        FakeWatcher watcher = new FakeWatcher();
+        watchers.add(watcher);
+        // holds the return of a watch that already delivers events to its listener
+        CountDownLatch returnGate = nextWatchReturnGate;
+        nextWatchReturnGate = null;
+        if (returnGate != null) {
+            try {
+                returnGate.await();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        return watcher;
+    }
+
+    @Override
+    public void close() {
+        disconnect();
+    }
+
+    /**
+     * Keeps watching until it is stopped like a watcher that gave up after an error, or closed.
+     */
+    class FakeWatcher implements RemoteDirectoryWatcher {
+
+        private volatile boolean stopped;
+        private volatile boolean closed;
+
+        void stop() {
+            stopped = true;
+        }
+
+        @Override
+        public boolean isWatching() {
+            return !stopped && !closed;
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+            closedWatchers.incrementAndGet();
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package com.github.sparsick.ssh4j;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+
+public class InotifyDirectoryWatcherTest {
+
+    private final BlockingQueue<Object> signals = new LinkedBlockingQueue<>();
+    private final AtomicBoolean channelClosed = new AtomicBoolean();
+
+    @Test
+    public void newFileIsReportedAsCreatedWhenFirstWriteIsClosed() throws Exception {
+        startWatcher("Setting up watches.\n"
+                + "Watches established.\n"
+                + "CREATE/new.txt\n"
+                + "MODIFY/new.txt\n"
+                + "MOVED_TO/other.txt\n"
+                + "CLOSE_WRITE,CLOSE/new.txt\n"
+                + "CLOSE_WRITE,CLOSE/new.txt\n");
+
+        assertThat(nextSignal()).isEqualTo(event(RemoteChangeEvent.Type.CREATED, "other.txt"));
+        assertThat(nextSignal()).isEqualTo(event(RemoteChangeEvent.Type.CREATED, "new.txt"));
+        assertThat(nextSignal()).isEqualTo(event(RemoteChangeEvent.Type.MODIFIED, "new.txt"));
+    }
+
+    @Test
+    public void fileDeletedBeforeFirstWriteIsClosedIsNotReported() throws Exception {
+        startWatcher("Setting up watches.\n"
+                + "Watches established.\n"
+                + "CREATE/tmp.txt\n"
+                + "DELETE/tmp.txt\n"
+                + "MOVED_TO/new.txt\n");
+
+        assertThat(nextSignal()).isEqualTo(event(RemoteChangeEvent.Type.CREATED, "new.txt"));
+    }
+
+    @Test
+    public void moveAndDeleteAreReported() throws Exception {
+        startWatcher("Setting up watches.\n"
+                + "Watches established.\n"
+                + "CREATE,ISDIR/dir\n"
+                + "MOVED_TO/moved.txt\n"
+                + "MOVED_FROM/old.txt\n"
+                + "DELETE/moved.txt\n");
+
+        assertThat(nextSignal()).isEqualTo(event(RemoteChangeEvent.Type.CREATED, "moved.txt"));
+        assertThat(nextSignal()).isEqualTo(event(RemoteChangeEvent.Type.DELETED, "old.txt"));
+        assertThat(nextSignal()).isEqualTo(event(RemoteChangeEvent.Type.DELETED, "moved.txt"));
+    }
+
+    @Test
+    public void fileNameMayContainSeparatorCharacters() throws Exception {
+        startWatcher("Watches established.\nCLOSE_WRITE,CLOSE/with,comma and space.txt\n");
+
+        assertThat(nextSignal()).isEqualTo(event(RemoteChangeEvent.Type.MODIFIED, "with,comma and space.txt"));
+    }
+
+    @Test
+    public void terminationAfterStartIsReportedAsError() throws Exception {
+        startWatcher("Watches established.\n");
+
+        assertThat(nextSignal()).isInstanceOf(IOException.class);
+    }
+
+    @Test
+    public void failureBeforeWatchesAreEstablishedIsThrown() {
+        try {
+            startWatcher("Setting up watches.\nCouldn't watch /home/missing: No such file or directory\n");
+            fail("constructor must fail when inotifywait cannot set up its watches");
+        } catch (IOException ex) {
+            assertThat(ex).hasMessageContaining("No such file or directory");
+            assertThat(channelClosed.get()).isTrue();
+        }
+    }
+
+    @Test
+    public void terminationBeforeWatchesAreEstablishedIsThrown() {
+        try {
+            startWatcher("Setting up watches.\n");
+            fail("constructor must fail when inotifywait terminates during start up");
+        } catch (IOException ex) {
+            assertThat(channelClosed.get()).isTrue();
+        }
+    }
+
+    @Test
+    public void buildCommandQuotesDirectory() {
+        assertThat(InotifyDirectoryWatcher.buildCommand("/home/it's"))
+                .contains(" '/home/it'\\''s' 2>&1 &")
+                .doesNotContain(" -q ");
+    }
+
+    private void startWatcher(String output) throws IOException {
+        InputStream events = new ByteArrayInputStream(output.getBytes(StandardCharsets.UTF_8));
+        new InotifyDirectoryWatcher("/home", events, () -> channelClosed.set(true), new RemoteChangeListener() {
+            @Override
+            public void onChange(RemoteChangeEvent event) {
+                signals.add(event.getType() + " " + event.getFileName());
+            }
+
+            @Override
+            public void onError(IOException ex) {
+                signals.add(ex);
+            }
+        });
+    }
+
+    private Object nextSignal() throws InterruptedException {
+        return signals.poll(5, TimeUnit.SECONDS);
+    }
+
+    private static String event(RemoteChangeEvent.Type type, String fileName) {
+        return type + " " + fileName;
+    }
+}
@@ -0,0 +1,169 @@
+package com.github.sparsick.ssh4j;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.After;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+
+public class InputStreamPublisherTest {
+
+    private static final int CONTENT_SIZE = 3 * InputStreamPublisher.CHUNK_SIZE + 1000;
+
+    private final byte[] content = randomContent(CONTENT_SIZE);
+    private final AtomicLong bytesRead = new AtomicLong();
+    private final AtomicBoolean streamClosed = new AtomicBoolean();
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void chunkIsOnlyReadWhenRequested() {
+        RecordingSubscriber subscriber = new RecordingSubscriber();
+        new InputStreamPublisher(this::openContent, Runnable::run).subscribe(subscriber);
+        assertThat(bytesRead.get()).isEqualTo(0);
+
+        subscriber.subscription.request(1);
+        assertThat(subscriber.signals).hasSize(1);
+        assertThat(bytesRead.get()).isEqualTo(InputStreamPublisher.CHUNK_SIZE);
+
+        subscriber.subscription.request(10);
+        assertThat(subscriber.signals).hasSize(5);
+        assertThat(subscriber.signals.get(4)).isEqualTo("complete");
+        assertThat(streamClosed.get()).isTrue();
+    }
+
+    @Test
+    public void cancelClosesStream() {
+        RecordingSubscriber subscriber = new RecordingSubscriber();
+        new InputStreamPublisher(this::openContent, Runnable::run).subscribe(subscriber);
+        subscriber.subscription.request(1);
+
+        subscriber.subscription.cancel();
+        subscriber.subscription.request(1);
+        assertThat(subscriber.signals).hasSize(1);
+        assertThat(streamClosed.get()).isTrue();
+    }
+
+    @Test
+    public void nonPositiveRequestIsSignalledAsError() {
+        RecordingSubscriber subscriber = new RecordingSubscriber();
+        new InputStreamPublisher(this::openContent, Runnable::run).subscribe(subscriber);
+
+        subscriber.subscription.request(0);
+        assertThat(subscriber.signals).hasSize(1);
+        assertThat(subscriber.signals.get(0)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    public void writeToCopiesAllChunks() throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+
+        OutputStreamSubscriber.writeTo(new InputStreamPublisher(this::openContent, executor), outputStream);
+        assertThat(outputStream.toByteArray()).isEqualTo(content);
+        assertThat(streamClosed.get()).isTrue();
+    }
+
+    @Test
+    public void runtimeExceptionOfOpenerIsSignalledAsError() {
+        InputStreamPublisher publisher = new InputStreamPublisher(() -> {
+            throw new IllegalStateException("not connected");
+        }, executor);
+
+        try {
+            OutputStreamSubscriber.writeTo(publisher, new ByteArrayOutputStream());
+            fail("writeTo must fail when the stream cannot be opened");
+        } catch (IOException ex) {
+            assertThat(ex.getCause()).isInstanceOf(IllegalStateException.class).hasMessage("not connected");
+        }
+    }
+
+    @Test
+    public void runtimeExceptionOfReadIsSignalledAsErrorAndClosesStream() {
+        InputStreamPublisher publisher = new InputStreamPublisher(() -> new FilterInputStream(openContent()) {
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                if (bytesRead.get() > 0) {
+                    throw new IllegalStateException("channel broken");
+                }
+                return super.read(b, off, len);
+            }
+        }, executor);
+
+        try {
+            OutputStreamSubscriber.writeTo(publisher, new ByteArrayOutputStream());
+            fail("writeTo must fail when reading fails");
+        } catch (IOException ex) {
+            assertThat(ex.getCause()).isInstanceOf(IllegalStateException.class).hasMessage("channel broken");
+            assertThat(streamClosed.get()).isTrue();
+        }
+    }
+
+    private InputStream openContent() {
+        return new FilterInputStream(new ByteArrayInputStream(content)) {
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                int read = super.read(b, off, len);
+                if (read > 0) {
+                    bytesRead.addAndGet(read);
+                }
+                return read;
+            }
+
+            @Override
+            public void close() throws IOException {
+                streamClosed.set(true);
+                super.close();
+            }
+        };
+    }
+
+    private static byte[] randomContent(int size) {
+        byte[] bytes = new byte[size];
+        new Random(42).nextBytes(bytes);
+        return bytes;
+    }
+
+    private static class RecordingSubscriber implements Flow.Subscriber<ByteBuffer> {
+
+        private final List<Object> signals = new CopyOnWriteArrayList<>();
+        private Flow.Subscription subscription;
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+        }
+
+        @Override
+        public void onNext(ByteBuffer item) {
+            signals.add(item);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            signals.add(throwable);
+        }
+
+        @Override
+        public void onComplete() {
+            signals.add("complete");
+        }
+    }
+}
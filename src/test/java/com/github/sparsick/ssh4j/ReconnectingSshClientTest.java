@@ -0,0 +1,272 @@
+package com.github.sparsick.ssh4j;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+
+public class ReconnectingSshClientTest {
+
+    private FakeSshClient delegate;
+    private ReconnectingSshClient clientUnderTest;
+
+    @Before
+    public void setUp() throws IOException {
+        delegate = new FakeSshClient();
+        clientUnderTest = new ReconnectingSshClient(delegate);
+        clientUnderTest.setBackoff(1, 5);
+        clientUnderTest.connect("host");
+    }
+
+    @Test
+    public void reconnectBeforeOperationAfterConnectionLoss() throws IOException {
+        delegate.dropConnection();
+
+        clientUnderTest.listChildrenFileNames("/home");
+        assertThat(delegate.connectCount.get()).isEqualTo(2);
+    }
+
+    @Test
+    public void retryIdempotentOperationWhenConnectionDropsDuringCall() throws IOException {
+        delegate.remoteFiles.put("/home/test.txt", new byte[0]);
+        delegate.dropConnectionDuringNextCall();
+
+        assertThat(clientUnderTest.fileExists("/home/test.txt")).isTrue();
+        assertThat(delegate.connectCount.get()).isEqualTo(2);
+    }
+
+    @Test
+    public void doNotRetryNonIdempotentOperation() throws IOException {
+        delegate.remoteFiles.put("/home/test.txt", new byte[0]);
+        delegate.dropConnectionDuringNextCall();
+
+        try {
+            clientUnderTest.delete("/home/test.txt");
+            fail("delete must not be repeated after the connection dropped");
+        } catch (IOException ex) {
+            assertThat(delegate.operations).isEmpty();
+        }
+    }
+
+    @Test
+    public void doNotRetryFailureOnLiveConnection() {
+        delegate.failNextCall(new IOException("No such file"));
+
+        try {
+            clientUnderTest.fileExists("/home/missing.txt");
+            fail("failure on a live connection must be reported");
+        } catch (IOException ex) {
+            assertThat(ex).hasMessage("No such file");
+            assertThat(delegate.connectCount.get()).isEqualTo(1);
+        }
+    }
+
+    @Test
+    public void reconnectOnlyOnceForConcurrentCallers() throws Exception {
+        delegate.dropConnection();
+        int callers = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(callers);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<List<String>>> results = new ArrayList<>();
+        for (int i = 0; i < callers; i++) {
+            results.add(executor.submit(() -> {
+                start.await();
+                return clientUnderTest.listChildrenFileNames("/home");
+            }));
+        }
+        start.countDown();
+        for (Future<List<String>> result : results) {
+            result.get();
+        }
+        executor.shutdown();
+
+        assertThat(delegate.connectCount.get()).isEqualTo(2);
+    }
+
+    @Test
+    public void reconnectBeforeReadingByteStream() throws IOException {
+        delegate.remoteFiles.put("/home/test.txt", "test".getBytes(StandardCharsets.UTF_8));
+        delegate.dropConnection();
+
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        OutputStreamSubscriber.writeTo(clientUnderTest.read("/home/test.txt"), outputStream);
+        assertThat(outputStream.toString("UTF-8")).isEqualTo("test");
+        assertThat(delegate.connectCount.get()).isEqualTo(2);
+    }
+
+    @Test(timeout = 5000)
+    public void subscribeDoesNotWaitForReconnect() throws Exception {
+        delegate.remoteFiles.put("/home/test.txt", "test".getBytes(StandardCharsets.UTF_8));
+        delegate.dropConnection();
+        CountDownLatch connectGate = new CountDownLatch(1);
+        delegate.connectGate = connectGate;
+        BlockingQueue<Object> signals = new LinkedBlockingQueue<>();
+
+        clientUnderTest.read("/home/test.txt").subscribe(new Flow.Subscriber<ByteBuffer>() {
+            @Override
+            public void onSubscribe(Flow.Subscription subscription) {
+                signals.add(subscription);
+                subscription.request(Long.MAX_VALUE);
+            }
+
+            @Override
+            public void onNext(ByteBuffer item) {
+                signals.add(StandardCharsets.UTF_8.decode(item).toString());
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+                signals.add(throwable);
+            }
+
+            @Override
+            public void onComplete() {
+                signals.add("complete");
+            }
+        });
+        assertThat(signals.take()).isInstanceOf(Flow.Subscription.class);
+        assertThat(delegate.connectCount.get()).isEqualTo(1);
+
+        connectGate.countDown();
+        assertThat(signals.take()).isEqualTo("test");
+        assertThat(signals.take()).isEqualTo("complete");
+        assertThat(delegate.connectCount.get()).isEqualTo(2);
+    }
+
+    @Test
+    public void readAfterExplicitDisconnectSignalsError() {
+        clientUnderTest.disconnect();
+
+        try {
+            OutputStreamSubscriber.writeTo(clientUnderTest.read("/home/test.txt"), new ByteArrayOutputStream());
+            fail("disconnected client must not reconnect on its own");
+        } catch (IOException ex) {
+            assertThat(delegate.connectCount.get()).isEqualTo(1);
+        }
+    }
+
+    @Test
+    public void stoppedWatchIsSetUpAgainAfterConnectionLoss() throws Exception {
+        BlockingQueue<Object> signals = new LinkedBlockingQueue<>();
+        RemoteDirectoryWatcher watcher = clientUnderTest.watch("/home", new RemoteChangeListener() {
+            @Override
+            public void onChange(RemoteChangeEvent event) {
+                signals.add(event.getFileName());
+            }
+
+            @Override
+            public void onError(IOException ex) {
+                signals.add(ex);
+            }
+        });
+        delegate.dropConnection();
+        delegate.watchers.get(0).stop();
+        delegate.watchListeners.get(0).onError(new IOException("connection lost"));
+
+        assertThat(signals.poll(5, TimeUnit.SECONDS)).isInstanceOf(IOException.class);
+        long deadline = System.currentTimeMillis() + 5000;
+        while (delegate.watchListeners.size() < 2 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(delegate.watchListeners).hasSize(2);
+        assertThat(delegate.connectCount.get()).isEqualTo(2);
+        assertThat(delegate.closedWatchers.get()).isEqualTo(1);
+
+        delegate.watchListeners.get(1).onChange(new RemoteChangeEvent(RemoteChangeEvent.Type.CREATED, "test.txt"));
+        assertThat(signals.poll(5, TimeUnit.SECONDS)).isEqualTo("test.txt");
+        watcher.close();
+        assertThat(delegate.closedWatchers.get()).isEqualTo(2);
+    }
+
+    @Test
+    public void runningWatchIsKeptAfterConnectionLoss() throws Exception {
+        BlockingQueue<Object> signals = new LinkedBlockingQueue<>();
+        RemoteDirectoryWatcher watcher = clientUnderTest.watch("/home", new RemoteChangeListener() {
+            @Override
+            public void onChange(RemoteChangeEvent event) {
+                signals.add(event.getFileName());
+            }
+
+            @Override
+            public void onError(IOException ex) {
+                signals.add(ex);
+            }
+        });
+        delegate.dropConnection();
+        delegate.watchListeners.get(0).onError(new IOException("connection lost"));
+
+        assertThat(signals.poll(5, TimeUnit.SECONDS)).isInstanceOf(IOException.class);
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!delegate.isConnected() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(delegate.connectCount.get()).isEqualTo(2);
+        // the still running watcher keeps its state and must not be replaced by a fresh one
+        Thread.sleep(100);
+        assertThat(delegate.watchListeners).hasSize(1);
+        assertThat(delegate.closedWatchers.get()).isEqualTo(0);
+
+        delegate.watchListeners.get(0).onChange(new RemoteChangeEvent(RemoteChangeEvent.Type.MODIFIED, "test.txt"));
+        assertThat(signals.poll(5, TimeUnit.SECONDS)).isEqualTo("test.txt");
+        watcher.close();
+        assertThat(delegate.closedWatchers.get()).isEqualTo(1);
+    }
+
+    @Test
+    public void watchThatLostTheRaceAgainstRewatchIsClosed() throws Exception {
+        CountDownLatch returnGate = new CountDownLatch(1);
+        delegate.nextWatchReturnGate = returnGate;
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        Future<RemoteDirectoryWatcher> watch = executor.submit(() -> clientUnderTest.watch("/home", event -> {
+        }));
+        long deadline = System.currentTimeMillis() + 5000;
+        while (delegate.watchListeners.isEmpty() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        // the first watcher fails before the watch call returned, so the rewatch installs a second one
+        delegate.watchers.get(0).stop();
+        delegate.watchListeners.get(0).onError(new IOException("watch failed"));
+        while (delegate.watchListeners.size() < 2 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(delegate.watchListeners).hasSize(2);
+        Thread.sleep(100);
+        returnGate.countDown();
+
+        RemoteDirectoryWatcher watcher = watch.get(5, TimeUnit.SECONDS);
+        assertThat(delegate.watchers.get(0).isWatching()).isFalse();
+        assertThat(delegate.watchers.get(1).isWatching()).isTrue();
+        assertThat(delegate.closedWatchers.get()).isEqualTo(1);
+        watcher.close();
+        assertThat(delegate.watchers.get(1).isWatching()).isFalse();
+        assertThat(delegate.closedWatchers.get()).isEqualTo(2);
+        executor.shutdown();
+    }
+
+    @Test
+    public void noReconnectAfterExplicitDisconnect() {
+        clientUnderTest.disconnect();
+
+        try {
+            clientUnderTest.listChildrenFileNames("/home");
+            fail("disconnected client must not reconnect on its own");
+        } catch (IOException ex) {
+            assertThat(delegate.connectCount.get()).isEqualTo(1);
+        }
+    }
+}
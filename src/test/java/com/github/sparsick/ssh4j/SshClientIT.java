@@ -1,8 +1,15 @@
 package com.github.sparsick.ssh4j;
 
+import java.io.File;
 import java.io.IOException;
 import java.nio.file.FileSystems;
+import java.nio.file.Files;
 import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import net.schmizz.sshj.SSHClient;
+import net.schmizz.sshj.connection.channel.direct.Session;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
@@ -108,4 +115,136 @@ public abstract class SshClientIT {
         assertThat(children).doesNotContain("test4.txt");
     }
 
+    @Test
+    public void reconnectAfterConnectionLoss() throws IOException {
+        authUserPasswordAndConnect();
+        ReconnectingSshClient reconnectingClient = new ReconnectingSshClient(clientUnderTest);
+        reconnectingClient.setKeepAlive(5, 3);
+        reconnectingClient.connect(SSH_HOST);
+        clientUnderTest.disconnect();
+        assertThat(clientUnderTest.isConnected()).isFalse();
+
+        List<String> children = reconnectingClient.listChildrenFolderNames("/home");
+        assertThat(children.size()).isGreaterThan(0);
+        assertThat(reconnectingClient.isConnected()).isTrue();
+    }
+
+    @Test
+    public void reconnectAfterServerSideConnectionDrop() throws Exception {
+        clientUnderTest.authUserPassword(SSH_USER, "vagrant");
+        clientUnderTest.setKnownHosts(FileSystems.getDefault().getPath("src/test/resources/known_hosts"));
+        ReconnectingSshClient reconnectingClient = new ReconnectingSshClient(clientUnderTest);
+        reconnectingClient.connect(SSH_HOST);
+
+        killOldestVagrantSession();
+        awaitConnectionLoss();
+
+        List<String> children = reconnectingClient.listChildrenFolderNames("/home");
+        assertThat(children.size()).isGreaterThan(0);
+        assertThat(reconnectingClient.isConnected()).isTrue();
+    }
+
+    /**
+     * Kills the sshd process of the oldest vagrant session, which is the one of the client under test. Its connection
+     * dies without an SSH disconnect.
+     */
+    private static void killOldestVagrantSession() throws IOException {
+        try (SSHClient killer = new SSHClient()) {
+            killer.loadKnownHosts(new File("src/test/resources/known_hosts"));
+            killer.connect(SSH_HOST);
+            killer.authPassword(SSH_USER, "vagrant");
+            try (Session session = killer.startSession()) {
+                Session.Command command = session.exec("pkill -KILL -o -u " + SSH_USER + " -f 'sshd: " + SSH_USER + "'");
+                command.join(10, TimeUnit.SECONDS);
+                assertThat(command.getExitStatus()).isEqualTo(0);
+            }
+        }
+    }
+
+    protected void awaitConnectionLoss() throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10000;
+        while (clientUnderTest.isConnected() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(100);
+        }
+        assertThat(clientUnderTest.isConnected()).isFalse();
+    }
+
+    @Test
+    public void scheduleUploadAndDownloadFile() throws Exception {
+        authUserPasswordAndConnect();
+        String remotePath = "/home/vagrant/test5.txt";
+        Path localPath = FileSystems.getDefault().getPath("target/test5.txt");
+        Files.deleteIfExists(localPath);
+
+        try (TransferScheduler scheduler = new TransferScheduler(2)) {
+            scheduler.addHost(SSH_HOST, clientUnderTest);
+            scheduler.setHostRateLimit(SSH_HOST, 1024 * 1024);
+            scheduler.upload(SSH_HOST, "bulk", TransferPriority.BULK, FileSystems.getDefault().getPath("src/test/resources/test.txt"), remotePath).get();
+            scheduler.download(SSH_HOST, "interactive", TransferPriority.INTERACTIVE, remotePath, localPath).get();
+
+            assertThat(scheduler.getCompletedTransfers(TransferPriority.BULK)).isEqualTo(1);
+            assertThat(scheduler.getCompletedTransfers(TransferPriority.INTERACTIVE)).isEqualTo(1);
+            assertThat(scheduler.getQueueDepth(TransferPriority.BULK)).isEqualTo(0);
+        }
+        assertThat(localPath).exists();
+    }
+
+    @Test
+    public void uploadAndDownloadFileWithChecksum() throws IOException {
+        authUserPasswordAndConnect();
+        String remotePath = "/home/vagrant/test6.txt";
+        Path localPath = FileSystems.getDefault().getPath("target/test6.txt");
+        Files.deleteIfExists(localPath);
+
+        clientUnderTest.upload(FileSystems.getDefault().getPath("src/test/resources/test.txt"), remotePath, ChecksumAlgorithm.SHA256);
+        clientUnderTest.download(remotePath, localPath, ChecksumAlgorithm.SHA256);
+        assertThat(localPath).hasContent(new String(Files.readAllBytes(FileSystems.getDefault().getPath("src/test/resources/test.txt"))));
+    }
+
+    @Test
+    public void uploadAndDownloadDirectory() throws IOException {
+        authUserPasswordAndConnect();
+        Path localDirectory = Files.createTempDirectory("upload");
+        Files.createDirectories(localDirectory.resolve("sub"));
+        Files.copy(FileSystems.getDefault().getPath("src/test/resources/test.txt"), localDirectory.resolve("sub/test.txt"));
+        Path downloadDirectory = Files.createTempDirectory("download");
+
+        clientUnderTest.uploadDirectory(localDirectory, "/home/vagrant/testdir", true);
+        clientUnderTest.downloadDirectory("/home/vagrant/testdir", downloadDirectory, true);
+        assertThat(downloadDirectory.resolve("sub/test.txt")).exists();
+    }
+
+    @Test
+    public void watchDirectoryReportsUploadedFile() throws Exception {
+        authUserPasswordAndConnect();
+        String remoteDirectory = "/home/vagrant";
+        String remotePath = remoteDirectory + "/test7.txt";
+        if (clientUnderTest.fileExists(remotePath)) {
+            clientUnderTest.delete(remotePath);
+        }
+        BlockingQueue<RemoteChangeEvent> events = new LinkedBlockingQueue<>();
+
+        try (RemoteDirectoryWatcher watcher = clientUnderTest.watch(remoteDirectory, events::add)) {
+            clientUnderTest.upload(FileSystems.getDefault().getPath("src/test/resources/test.txt"), remotePath);
+            RemoteChangeEvent event = events.poll(10, TimeUnit.SECONDS);
+            assertThat(event).isNotNull();
+            assertThat(event.getType()).isEqualTo(RemoteChangeEvent.Type.CREATED);
+            assertThat(event.getFileName()).isEqualTo("test7.txt");
+        }
+    }
+
+    @Test
+    public void writeRemoteFileFromReadByteStream() throws IOException {
+        authUserPasswordAndConnect();
+        String remotePath = "/home/vagrant/test8.txt";
+        String remoteCopyPath = "/home/vagrant/test9.txt";
+        Path localPath = FileSystems.getDefault().getPath("target/test9.txt");
+        Files.deleteIfExists(localPath);
+
+        clientUnderTest.upload(FileSystems.getDefault().getPath("src/test/resources/test.txt"), remotePath);
+        clientUnderTest.write(remoteCopyPath, clientUnderTest.read(remotePath));
+        clientUnderTest.download(remoteCopyPath, localPath);
+        assertThat(localPath).hasContent(new String(Files.readAllBytes(FileSystems.getDefault().getPath("src/test/resources/test.txt"))));
+    }
+
 }
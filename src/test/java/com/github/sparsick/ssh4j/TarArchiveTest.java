@@ -0,0 +1,251 @@
+package com.github.sparsick.ssh4j;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+
+public class TarArchiveTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void writeAndExtractDirectoryTree() throws IOException {
+        Path source = temporaryFolder.newFolder("source").toPath();
+        Files.createDirectories(source.resolve("sub/empty"));
+        Files.write(source.resolve("test.txt"), "test".getBytes(StandardCharsets.UTF_8));
+        String longName = new String(new char[120]).replace('\0', 'l') + ".txt";
+        Files.write(source.resolve("sub").resolve(longName), new byte[1500]);
+        ByteArrayOutputStream archive = new ByteArrayOutputStream();
+
+        TarArchive.write(source, archive);
+        Path target = temporaryFolder.newFolder("target").toPath();
+        TarArchive.extract(new ByteArrayInputStream(archive.toByteArray()), target);
+
+        assertThat(Files.readAllBytes(target.resolve("test.txt"))).isEqualTo("test".getBytes(StandardCharsets.UTF_8));
+        assertThat(Files.size(target.resolve("sub").resolve(longName))).isEqualTo(1500);
+        assertThat(Files.isDirectory(target.resolve("sub/empty"))).isTrue();
+    }
+
+    @Test
+    public void extractStripsLeadingDotSlash() throws IOException {
+        ByteArrayOutputStream archive = new ByteArrayOutputStream();
+        writeEntry(archive, header("./", (byte) '5', 0), new byte[0]);
+        writeEntry(archive, header("./dir/test.txt", (byte) '0', 4), "test".getBytes(StandardCharsets.UTF_8));
+        endArchive(archive);
+
+        Path target = extract(archive);
+        assertThat(Files.readAllBytes(target.resolve("dir/test.txt"))).isEqualTo("test".getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void rejectEntryEscapingTargetDirectory() throws IOException {
+        ByteArrayOutputStream archive = new ByteArrayOutputStream();
+        writeEntry(archive, header("dir/../../evil.txt", (byte) '0', 4), "evil".getBytes(StandardCharsets.UTF_8));
+        endArchive(archive);
+
+        assertExtractFails(archive, "points outside");
+        assertThat(Files.exists(temporaryFolder.getRoot().toPath().resolve("evil.txt"))).isFalse();
+    }
+
+    @Test
+    public void rejectAbsoluteEntryName() throws IOException {
+        ByteArrayOutputStream archive = new ByteArrayOutputStream();
+        writeEntry(archive, header("/tmp/evil.txt", (byte) '0', 4), "evil".getBytes(StandardCharsets.UTF_8));
+        endArchive(archive);
+
+        assertExtractFails(archive, "absolute name");
+    }
+
+    @Test
+    public void extractGnuLongName() throws IOException {
+        String longName = "dir/" + new String(new char[150]).replace('\0', 'a') + ".txt";
+        byte[] longNameData = (longName + "\0").getBytes(StandardCharsets.UTF_8);
+        ByteArrayOutputStream archive = new ByteArrayOutputStream();
+        writeEntry(archive, header("././@LongLink", (byte) 'L', longNameData.length), longNameData);
+        writeEntry(archive, header(longName.substring(0, 100), (byte) '0', 4), "long".getBytes(StandardCharsets.UTF_8));
+        endArchive(archive);
+
+        Path target = extract(archive);
+        assertThat(Files.readAllBytes(target.resolve(longName))).isEqualTo("long".getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void rejectGnuLongNameEscapingTargetDirectory() throws IOException {
+        byte[] longNameData = "../evil.txt\0".getBytes(StandardCharsets.UTF_8);
+        ByteArrayOutputStream archive = new ByteArrayOutputStream();
+        writeEntry(archive, header("././@LongLink", (byte) 'L', longNameData.length), longNameData);
+        writeEntry(archive, header("harmless.txt", (byte) '0', 4), "evil".getBytes(StandardCharsets.UTF_8));
+        endArchive(archive);
+
+        assertExtractFails(archive, "points outside");
+    }
+
+    @Test
+    public void extractPaxPath() throws IOException {
+        String path = "pax/" + new String(new char[120]).replace('\0', 'p') + ".txt";
+        byte[] records = paxRecord("mtime=0");
+        byte[] pathRecord = paxRecord("path=" + path);
+        byte[] paxData = new byte[records.length + pathRecord.length];
+        System.arraycopy(records, 0, paxData, 0, records.length);
+        System.arraycopy(pathRecord, 0, paxData, records.length, pathRecord.length);
+        ByteArrayOutputStream archive = new ByteArrayOutputStream();
+        writeEntry(archive, header("PaxHeaders/entry", (byte) 'x', paxData.length), paxData);
+        writeEntry(archive, header("truncated-name", (byte) '0', 3), "pax".getBytes(StandardCharsets.UTF_8));
+        endArchive(archive);
+
+        Path target = extract(archive);
+        assertThat(Files.readAllBytes(target.resolve(path))).isEqualTo("pax".getBytes(StandardCharsets.UTF_8));
+        assertThat(Files.exists(target.resolve("truncated-name"))).isFalse();
+    }
+
+    @Test
+    public void extractBase256Size() throws IOException {
+        byte[] header = header("big.txt", (byte) '0', 0);
+        Arrays.fill(header, 124, 136, (byte) 0);
+        header[124] = (byte) 0x80;
+        header[135] = 5;
+        ByteArrayOutputStream archive = new ByteArrayOutputStream();
+        writeEntry(archive, withChecksum(header), "12345".getBytes(StandardCharsets.UTF_8));
+        endArchive(archive);
+
+        Path target = extract(archive);
+        assertThat(Files.readAllBytes(target.resolve("big.txt"))).isEqualTo("12345".getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void extractHardLinkAsCopyOfLinkedFile() throws IOException {
+        ByteArrayOutputStream archive = new ByteArrayOutputStream();
+        writeEntry(archive, header("./a.txt", (byte) '0', 5), "hello".getBytes(StandardCharsets.UTF_8));
+        writeEntry(archive, linkHeader("./dir/b.txt", "./a.txt"), new byte[0]);
+        endArchive(archive);
+
+        Path target = extract(archive);
+        assertThat(Files.readAllBytes(target.resolve("dir/b.txt"))).isEqualTo("hello".getBytes(StandardCharsets.UTF_8));
+        assertThat(Files.readAllBytes(target.resolve("a.txt"))).isEqualTo("hello".getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void extractHardLinkWithGnuLongLinkName() throws IOException {
+        String longName = "dir/" + new String(new char[150]).replace('\0', 'a') + ".txt";
+        byte[] longNameData = (longName + "\0").getBytes(StandardCharsets.UTF_8);
+        ByteArrayOutputStream archive = new ByteArrayOutputStream();
+        writeEntry(archive, header("././@LongLink", (byte) 'L', longNameData.length), longNameData);
+        writeEntry(archive, header(longName.substring(0, 100), (byte) '0', 4), "long".getBytes(StandardCharsets.UTF_8));
+        writeEntry(archive, header("././@LongLink", (byte) 'K', longNameData.length), longNameData);
+        writeEntry(archive, linkHeader("b.txt", longName.substring(0, 100)), new byte[0]);
+        endArchive(archive);
+
+        Path target = extract(archive);
+        assertThat(Files.readAllBytes(target.resolve("b.txt"))).isEqualTo("long".getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void rejectHardLinkEscapingTargetDirectory() throws IOException {
+        ByteArrayOutputStream archive = new ByteArrayOutputStream();
+        writeEntry(archive, linkHeader("b.txt", "../../etc/passwd"), new byte[0]);
+        endArchive(archive);
+
+        assertExtractFails(archive, "points outside");
+    }
+
+    @Test
+    public void rejectHardLinkToMissingFile() throws IOException {
+        ByteArrayOutputStream archive = new ByteArrayOutputStream();
+        writeEntry(archive, linkHeader("b.txt", "a.txt"), new byte[0]);
+        endArchive(archive);
+
+        assertExtractFails(archive, "not a file extracted before");
+    }
+
+    @Test
+    public void rejectCorruptHeader() throws IOException {
+        byte[] header = header("test.txt", (byte) '0', 4);
+        header[0] = 'T';
+        ByteArrayOutputStream archive = new ByteArrayOutputStream();
+        writeEntry(archive, header, "test".getBytes(StandardCharsets.UTF_8));
+        endArchive(archive);
+
+        assertExtractFails(archive, "checksum");
+    }
+
+    private Path extract(ByteArrayOutputStream archive) throws IOException {
+        Path target = temporaryFolder.newFolder("target").toPath();
+        TarArchive.extract(new ByteArrayInputStream(archive.toByteArray()), target);
+        return target;
+    }
+
+    private void assertExtractFails(ByteArrayOutputStream archive, String messagePart) throws IOException {
+        try {
+            extract(archive);
+            fail("extract must reject the archive");
+        } catch (IOException ex) {
+            assertThat(ex.getMessage()).contains(messagePart);
+        }
+    }
+
+    private static byte[] header(String name, byte type, long size) {
+        byte[] header = new byte[512];
+        byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+        System.arraycopy(nameBytes, 0, header, 0, Math.min(100, nameBytes.length));
+        putOctal(header, 100, 8, 0644);
+        putOctal(header, 108, 8, 0);
+        putOctal(header, 116, 8, 0);
+        putOctal(header, 124, 12, size);
+        putOctal(header, 136, 12, 0);
+        header[156] = type;
+        byte[] magic = ("ustar\0" + "00").getBytes(StandardCharsets.US_ASCII);
+        System.arraycopy(magic, 0, header, 257, magic.length);
+        return withChecksum(header);
+    }
+
+    private static byte[] linkHeader(String name, String linkName) {
+        byte[] header = header(name, (byte) '1', 0);
+        byte[] linkNameBytes = linkName.getBytes(StandardCharsets.UTF_8);
+        System.arraycopy(linkNameBytes, 0, header, 157, Math.min(100, linkNameBytes.length));
+        return withChecksum(header);
+    }
+
+    private static byte[] withChecksum(byte[] header) {
+        Arrays.fill(header, 148, 156, (byte) ' ');
+        long sum = 0;
+        for (byte b : header) {
+            sum += b & 0xff;
+        }
+        byte[] checksum = String.format("%06o\0", sum).getBytes(StandardCharsets.US_ASCII);
+        System.arraycopy(checksum, 0, header, 148, checksum.length);
+        return header;
+    }
+
+    private static void putOctal(byte[] header, int offset, int length, long value) {
+        byte[] digits = String.format("%0" + (length - 1) + "o", value).getBytes(StandardCharsets.US_ASCII);
+        System.arraycopy(digits, 0, header, offset, digits.length);
+    }
+
+    private static byte[] paxRecord(String keyValue) {
+        // the length prefix counts itself, the space and the newline
+        int length = keyValue.length() + 2;
+        length += String.valueOf(length + String.valueOf(length).length()).length();
+        return (length + " " + keyValue + "\n").getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static void writeEntry(ByteArrayOutputStream archive, byte[] header, byte[] data) {
+        archive.write(header, 0, header.length);
+        archive.write(data, 0, data.length);
+        archive.write(new byte[(512 - data.length % 512) % 512], 0, (512 - data.length % 512) % 512);
+    }
+
+    private static void endArchive(ByteArrayOutputStream archive) {
+        archive.write(new byte[1024], 0, 1024);
+    }
+}
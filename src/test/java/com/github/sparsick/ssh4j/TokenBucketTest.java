@@ -0,0 +1,90 @@
+package com.github.sparsick.ssh4j;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class TokenBucketTest {
+
+    @Test
+    public void acquireWithinBurstDoesNotWait() throws InterruptedException {
+        TokenBucket bucket = new TokenBucket(100000);
+
+        long start = System.nanoTime();
+        bucket.acquire(100000, false);
+        assertThat(millisSince(start)).isLessThan(100);
+    }
+
+    @Test
+    public void acquireBeyondBurstWaitsForRefill() throws InterruptedException {
+        TokenBucket bucket = new TokenBucket(100000);
+        bucket.acquire(100000, false);
+
+        long start = System.nanoTime();
+        bucket.acquire(50000, false);
+        assertThat(millisSince(start)).isGreaterThanOrEqualTo(450);
+    }
+
+    @Test
+    public void interactiveCallerOvertakesWaitingBulkCaller() throws Exception {
+        TokenBucket bucket = new TokenBucket(10000);
+        bucket.acquire(10000, false);
+        List<String> order = new CopyOnWriteArrayList<>();
+
+        Thread bulk = acquireInBackground(bucket, 5000, false, "bulk", order);
+        Thread.sleep(100);
+        Thread interactive = acquireInBackground(bucket, 5000, true, "interactive", order);
+        bulk.join(5000);
+        interactive.join(5000);
+
+        assertThat(order).containsExactly("interactive", "bulk");
+    }
+
+    @Test
+    public void bulkCallerNeverOverdrawsBucket() throws Exception {
+        TokenBucket bucket = new TokenBucket(10000);
+        bucket.acquire(10000, false);
+        bucket.acquire(5000, false);
+
+        // an interactive caller arriving right after the bulk one only waits for the refill of its own chunk
+        long start = System.nanoTime();
+        bucket.acquire(1, true);
+        assertThat(millisSince(start)).isLessThan(100);
+    }
+
+    @Test
+    public void rateLimitedStreamDoesNotOverdrawBucketSmallerThanChunk() throws Exception {
+        TokenBucket bucket = new TokenBucket(10000);
+        RateLimitedOutputStream outputStream = new RateLimitedOutputStream(new ByteArrayOutputStream(), Collections.singletonList(bucket), false);
+
+        long start = System.nanoTime();
+        outputStream.write(new byte[InputStreamPublisher.CHUNK_SIZE]);
+        assertThat(millisSince(start)).isGreaterThanOrEqualTo(2000);
+
+        // the bulk writer left no debt behind, an interactive caller gets through at once
+        start = System.nanoTime();
+        bucket.acquire(1, true);
+        assertThat(millisSince(start)).isLessThan(100);
+    }
+
+    private static Thread acquireInBackground(TokenBucket bucket, long bytes, boolean interactive, String name, List<String> order) {
+        Thread thread = new Thread(() -> {
+            try {
+                bucket.acquire(bytes, interactive);
+                order.add(name);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        thread.start();
+        return thread;
+    }
+
+    private static long millisSince(long startNanos) {
+        return (System.nanoTime() - startNanos) / 1000000;
+    }
+}
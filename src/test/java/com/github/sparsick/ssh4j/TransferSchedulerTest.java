@@ -0,0 +1,210 @@
+package com.github.sparsick.ssh4j;
+
+import java.io.IOException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+
+public class TransferSchedulerTest {
+
+    private static final String HOST = "host";
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private FakeSshClient client;
+    private TransferScheduler schedulerUnderTest;
+
+    @Before
+    public void setUp() throws IOException {
+        client = new FakeSshClient();
+        client.connect(HOST);
+    }
+
+    @After
+    public void tearDown() throws InterruptedException {
+        if (client.operationGate != null) {
+            client.operationGate.countDown();
+        }
+        schedulerUnderTest.close();
+    }
+
+    @Test
+    public void interactiveTransferGoesBeforeQueuedBulkTransfers() throws Exception {
+        startScheduler(1);
+        Path local = createFile("test.txt", 1000);
+        client.operationGate = new CountDownLatch(1);
+
+        List<Future<Void>> results = new ArrayList<>();
+        results.add(schedulerUnderTest.upload(HOST, "bulk", TransferPriority.BULK, local, "/bulk0"));
+        awaitActiveTransfers(1);
+        results.add(schedulerUnderTest.upload(HOST, "bulk", TransferPriority.BULK, local, "/bulk1"));
+        results.add(schedulerUnderTest.upload(HOST, "bulk", TransferPriority.BULK, local, "/bulk2"));
+        results.add(schedulerUnderTest.upload(HOST, "interactive", TransferPriority.INTERACTIVE, local, "/interactive"));
+        assertThat(schedulerUnderTest.getQueueDepth(TransferPriority.BULK)).isEqualTo(2);
+        client.operationGate.countDown();
+        awaitAll(results);
+
+        assertThat(client.operations).containsExactly("upload /bulk0", "upload /interactive", "upload /bulk1", "upload /bulk2");
+    }
+
+    @Test
+    public void jobsOfSamePriorityShareWorkersFairly() throws Exception {
+        startScheduler(1);
+        Path local = createFile("test.txt", 1000);
+        client.operationGate = new CountDownLatch(1);
+
+        List<Future<Void>> results = new ArrayList<>();
+        results.add(schedulerUnderTest.upload(HOST, "a", TransferPriority.NORMAL, local, "/a0"));
+        awaitActiveTransfers(1);
+        for (int i = 1; i <= 3; i++) {
+            results.add(schedulerUnderTest.upload(HOST, "a", TransferPriority.NORMAL, local, "/a" + i));
+        }
+        for (int i = 1; i <= 3; i++) {
+            results.add(schedulerUnderTest.upload(HOST, "b", TransferPriority.NORMAL, local, "/b" + i));
+        }
+        client.operationGate.countDown();
+        awaitAll(results);
+
+        assertThat(client.operations).containsExactly("upload /a0", "upload /b1", "upload /a1", "upload /b2", "upload /a2", "upload /b3", "upload /a3");
+    }
+
+    @Test
+    public void downloadIsChargedWithItsActualSize() throws Exception {
+        startScheduler(1);
+        client.remoteFiles.put("/large", new byte[4000]);
+        Path local = createFile("test.txt", 1000);
+        client.operationGate = new CountDownLatch(1);
+
+        List<Future<Void>> results = new ArrayList<>();
+        results.add(schedulerUnderTest.download(HOST, "download", TransferPriority.NORMAL, "/large", temporaryFolder.getRoot().toPath().resolve("large0")));
+        awaitActiveTransfers(1);
+        results.add(schedulerUnderTest.download(HOST, "download", TransferPriority.NORMAL, "/large", temporaryFolder.getRoot().toPath().resolve("large1")));
+        for (int i = 1; i <= 3; i++) {
+            results.add(schedulerUnderTest.upload(HOST, "upload", TransferPriority.NORMAL, local, "/small" + i));
+        }
+        client.operationGate.countDown();
+        awaitAll(results);
+
+        assertThat(client.operations).containsExactly("download /large", "upload /small1", "upload /small2", "upload /small3", "download /large");
+    }
+
+    @Test
+    public void reservedWorkerOnlyTakesInteractiveTransfers() throws Exception {
+        startScheduler(2);
+        Path local = createFile("test.txt", 1000);
+        client.operationGate = new CountDownLatch(1);
+
+        schedulerUnderTest.upload(HOST, "bulk", TransferPriority.BULK, local, "/bulk0");
+        schedulerUnderTest.upload(HOST, "bulk", TransferPriority.BULK, local, "/bulk1");
+        awaitActiveTransfers(1);
+        Thread.sleep(100);
+        assertThat(schedulerUnderTest.getActiveTransfers()).isEqualTo(1);
+
+        schedulerUnderTest.upload(HOST, "interactive", TransferPriority.INTERACTIVE, local, "/interactive");
+        awaitActiveTransfers(2);
+        assertThat(schedulerUnderTest.getQueueDepth(TransferPriority.BULK)).isEqualTo(1);
+    }
+
+    @Test
+    public void rateLimitThrottlesUpload() throws Exception {
+        startScheduler(1);
+        schedulerUnderTest.setHostRateLimit(HOST, 100000);
+        Path local = createFile("test.txt", 250000);
+
+        long start = System.nanoTime();
+        schedulerUnderTest.upload(HOST, "bulk", TransferPriority.BULK, local, "/test.txt").get();
+
+        // the first 100000 bytes are covered by the burst, the rest needs 1.5 seconds of refill
+        assertThat((System.nanoTime() - start) / 1000000).isGreaterThanOrEqualTo(1400);
+        assertThat(client.remoteFiles.get("/test.txt")).isEqualTo(Files.readAllBytes(local));
+    }
+
+    @Test
+    public void rateLimitThrottlesDownload() throws Exception {
+        startScheduler(1);
+        schedulerUnderTest.setGlobalRateLimit(100000);
+        Path remoteContent = createFile("remote.txt", 250000);
+        client.remoteFiles.put("/test.txt", Files.readAllBytes(remoteContent));
+        Path local = temporaryFolder.getRoot().toPath().resolve("test.txt");
+
+        long start = System.nanoTime();
+        schedulerUnderTest.download(HOST, "bulk", TransferPriority.BULK, "/test.txt", local).get();
+
+        assertThat((System.nanoTime() - start) / 1000000).isGreaterThanOrEqualTo(1400);
+        assertThat(Files.readAllBytes(local)).isEqualTo(Files.readAllBytes(remoteContent));
+        assertThat(schedulerUnderTest.getTransferredBytes()).isEqualTo(250000);
+    }
+
+    @Test
+    public void rateLimitedDownloadDoesNotOverwriteExistingFile() throws Exception {
+        startScheduler(1);
+        schedulerUnderTest.setGlobalRateLimit(100000);
+        client.remoteFiles.put("/test.txt", new byte[10]);
+        Path local = createFile("test.txt", 5);
+        byte[] localContent = Files.readAllBytes(local);
+
+        try {
+            schedulerUnderTest.download(HOST, "bulk", TransferPriority.BULK, "/test.txt", local).get();
+            fail("download must not overwrite an existing file");
+        } catch (ExecutionException ex) {
+            assertThat(ex.getCause()).isInstanceOf(FileAlreadyExistsException.class);
+            assertThat(Files.readAllBytes(local)).isEqualTo(localContent);
+        }
+    }
+
+    @Test
+    public void failedRateLimitedDownloadRemovesPartialFile() throws Exception {
+        startScheduler(1);
+        schedulerUnderTest.setGlobalRateLimit(100000);
+        client.failNextCall(new IOException("connection lost"));
+        Path local = temporaryFolder.getRoot().toPath().resolve("test.txt");
+
+        try {
+            schedulerUnderTest.download(HOST, "bulk", TransferPriority.BULK, "/test.txt", local).get();
+            fail("download must fail");
+        } catch (ExecutionException ex) {
+            assertThat(ex.getCause()).isInstanceOf(IOException.class);
+            assertThat(Files.exists(local)).isFalse();
+        }
+    }
+
+    private void startScheduler(int workerCount) {
+        schedulerUnderTest = new TransferScheduler(workerCount);
+        schedulerUnderTest.addHost(HOST, client);
+    }
+
+    private Path createFile(String name, int size) throws IOException {
+        byte[] content = new byte[size];
+        new Random(42).nextBytes(content);
+        return Files.write(temporaryFolder.newFile(name).toPath(), content);
+    }
+
+    private void awaitActiveTransfers(int expected) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (schedulerUnderTest.getActiveTransfers() != expected && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(schedulerUnderTest.getActiveTransfers()).isEqualTo(expected);
+    }
+
+    private static void awaitAll(List<Future<Void>> results) throws Exception {
+        for (Future<Void> result : results) {
+            result.get();
+        }
+    }
+}